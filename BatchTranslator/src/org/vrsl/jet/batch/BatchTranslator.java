@@ -0,0 +1,243 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.batch;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.vrsl.jet.models.cim.persistence.ModelReaderFactory;
+import org.vrsl.jet.translators.AbstractCimTranslator;
+import org.vrsl.jet.translators.TranslatorsRepository;
+
+/**
+ * Translates schema files without the NetBeans platform running. Schemas are
+ * translated in parallel, each of them by the translators which have been set
+ * up for it in the editor, or by the translators selected by the command line.
+ * Translators are found by the default lookup, so the module jars of
+ * translators and org-openide-util-lookup have to be on the class path.
+ * <p>
+ * The exit code is 0 if all schemas have been translated, 1 if some of them
+ * have failed and 2 if the command line is incorrect.
+ */
+public final class BatchTranslator {
+
+    private static final String SCHEMA_EXTENSION = ".xem";
+    private static final int EXIT_FAILED = 1;
+    private static final int EXIT_USAGE = 2;
+
+    private final List<String> translatorNames = new ArrayList<>();
+    private final List<File> files = new ArrayList<>();
+    private ModelReaderFactory.Engine engine = ModelReaderFactory.Engine.STREAMING_XML;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    public static void main(String[] args) {
+        BatchTranslator bt = new BatchTranslator();
+        try {
+            bt.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage(System.err);
+            System.exit(EXIT_USAGE);
+        }
+        if (!bt.run(System.out)) {
+            System.exit(EXIT_FAILED);
+        }
+    }
+
+    private static void usage(PrintStream out) {
+        out.println("Usage: BatchTranslator [options] <schema file or directory>...");
+        out.println("Directories are searched for *" + SCHEMA_EXTENSION + " files recursively.");
+        out.println("Options:");
+        out.println("  -t <name>     run the translator, default properties are used if it has not");
+        out.println("                been set up for a schema; may be repeated. By default every");
+        out.println("                translator set up for a schema is run.");
+        out.println("  -j <threads>  number of schemas translated in parallel, by default the");
+        out.println("                number of processors.");
+        out.println("  -e <engine>   reader of schema files: " + Arrays.toString(ModelReaderFactory.Engine.values()));
+        out.println("                STREAMING_XML by default.");
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-t":
+                    translatorNames.add(value(args, ++i));
+                    break;
+                case "-j":
+                    String count = value(args, ++i);
+                    try {
+                        threads = Integer.parseInt(count);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Number of threads is expected: " + count);
+                    }
+                    if (threads < 1) {
+                        throw new IllegalArgumentException("At least one thread is required.");
+                    }
+                    break;
+                case "-e":
+                    String name = value(args, ++i);
+                    try {
+                        engine = ModelReaderFactory.Engine.valueOf(name);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unknown engine " + name);
+                    }
+                    break;
+                default:
+                    if (args[i].startsWith("-")) {
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                    }
+                    collect(new File(args[i]));
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No schema files to translate.");
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Option " + args[i - 1] + " requires a value.");
+        }
+        return args[i];
+    }
+
+    private void collect(File f) {
+        if (f.isDirectory()) {
+            File[] children = f.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    if (child.isDirectory() || child.getName().endsWith(SCHEMA_EXTENSION)) {
+                        collect(child);
+                    }
+                }
+            }
+        } else if (f.isFile()) {
+            files.add(f);
+        } else {
+            throw new IllegalArgumentException("File " + f + " does not exist.");
+        }
+    }
+
+    private Collection<? extends AbstractCimTranslator> findTranslators() {
+        Collection<? extends AbstractCimTranslator> all = TranslatorsRepository.getTranslators();
+        if (translatorNames.isEmpty()) {
+            return all;
+        }
+        List<AbstractCimTranslator> res = new ArrayList<>();
+        for (String name : translatorNames) {
+            AbstractCimTranslator found = null;
+            for (AbstractCimTranslator t : all) {
+                if (t.getName().equals(name)) {
+                    found = t;
+                }
+            }
+            if (found == null) {
+                throw new IllegalArgumentException("Translator " + name + " has not been found.");
+            }
+            res.add(found);
+        }
+        return res;
+    }
+
+    /**
+     * Translates all schemas reporting every schema as soon as it is done.
+     *
+     * @return true if all schemas have been translated
+     */
+    private boolean run(PrintStream out) {
+        Collection<? extends AbstractCimTranslator> translators;
+        try {
+            translators = findTranslators();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return false;
+        }
+        if (translators.isEmpty()) {
+            System.err.println("No translators have been found on the class path.");
+            return false;
+        }
+        long started = System.nanoTime();
+        int failed = 0;
+        int skipped = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        try {
+            CompletionService<SchemaTranslation> cs = new ExecutorCompletionService<>(executor);
+            for (File f : files) {
+                cs.submit(new SchemaTranslation(f, engine, translators, !translatorNames.isEmpty()));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                SchemaTranslation st = cs.take().get();
+                report(out, st);
+                if (st.isFailed()) {
+                    failed++;
+                } else if (st.isSkipped()) {
+                    skipped++;
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        out.println(files.size() + " schemas, " + (files.size() - failed - skipped) + " translated, "
+                + skipped + " skipped, " + failed + " failed in " + millis(System.nanoTime() - started) + " ms");
+        return failed == 0;
+    }
+
+    private static void report(PrintStream out, SchemaTranslation st) {
+        String status = st.isFailed() ? "FAILED " : st.isSkipped() ? "skipped" : "ok     ";
+        StringBuilder sb = new StringBuilder();
+        sb.append(status).append(String.format(" %8d ms  ", millis(st.getTotalTime()))).append(st.getFile().getPath());
+        String separator = "  (";
+        for (Entry<String, Long> e : st.getTimings().entrySet()) {
+            sb.append(separator).append(e.getKey()).append(' ').append(millis(e.getValue())).append(" ms");
+            separator = ", ";
+        }
+        if (!st.getTimings().isEmpty()) {
+            sb.append(')');
+        }
+        out.println(sb);
+        for (String e : st.getErrors()) {
+            out.println("        " + e);
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private BatchTranslator() {
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.batch;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.vrsl.jet.models.cim.NamedElementNotFoundException;
+import org.vrsl.jet.models.cim.Schema;
+import org.vrsl.jet.models.cim.persistence.ModelPersistenceException;
+import org.vrsl.jet.models.cim.persistence.ModelReader;
+import org.vrsl.jet.models.cim.persistence.ModelReaderFactory;
+import org.vrsl.jet.models.erd.variants.ErdVariantsFactory;
+import org.vrsl.jet.translators.AbstractCimTranslator;
+import org.vrsl.jet.translators.CimTranslatorError;
+import org.vrsl.jet.translators.ValidationResult;
+import org.vrsl.jet.translators.erd.SchemaTranslatorProperties;
+
+/**
+ * Translation of one schema file the same way the editor translates it: the
+ * schema is read into a snapshot, properties of each translator are taken
+ * from its preferences stored in the schema and output paths are resolved
+ * against the directory of the file.
+ */
+final class SchemaTranslation implements Callable<SchemaTranslation> {
+
+    private static final String READ_STEP = "read";
+
+    private final File file;
+    private final ModelReaderFactory.Engine engine;
+    private final Collection<? extends AbstractCimTranslator> translators;
+    private final boolean selected;
+
+    // -- Results -------------------------------------------------------------
+    private final Map<String, Long> timings = new LinkedHashMap<>();
+    private final List<String> errors = new ArrayList<>();
+    private long totalTime;
+
+    /**
+     * @param selected true if translators have been selected explicitly and
+     * have to be run with default properties when they have not been set up
+     * for the schema, otherwise such translators are skipped
+     */
+    SchemaTranslation(File file, ModelReaderFactory.Engine engine, Collection<? extends AbstractCimTranslator> translators, boolean selected) {
+        this.file = file;
+        this.engine = engine;
+        this.translators = translators;
+        this.selected = selected;
+    }
+
+    @Override
+    public SchemaTranslation call() {
+        long started = System.nanoTime();
+        try {
+            Schema s = read();
+            String path = file.getAbsoluteFile().getParent();
+            for (AbstractCimTranslator t : translators) {
+                translate(s, path, t);
+            }
+        } catch (ModelPersistenceException | IOException e) {
+            errors.add(READ_STEP + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            // -- Readers and variants factories reject malformed files this way ---
+            Logger.getLogger(SchemaTranslation.class.getName()).log(Level.SEVERE, file.getPath(), e);
+            errors.add(READ_STEP + ": " + e);
+        } finally {
+            totalTime = System.nanoTime() - started;
+        }
+        return this;
+    }
+
+    private Schema read() throws ModelPersistenceException, IOException {
+        long started = System.nanoTime();
+        try (InputStream sysIn = new FileInputStream(file)) {
+            // -- Variants factories cache shared variants, one per schema ---------
+            ModelReader r = ModelReaderFactory.newInstance(new ErdVariantsFactory(), engine);
+            Schema s = r.read(sysIn).snapshot();
+            timings.put(READ_STEP, System.nanoTime() - started);
+            return s;
+        }
+    }
+
+    private void translate(Schema s, String path, AbstractCimTranslator prototype) {
+        String name = prototype.getName();
+        long started = System.nanoTime();
+        try {
+            Map<String, Object> trProps = SchemaTranslatorProperties.read(s, prototype);
+            if (trProps == null && !selected) {
+                return;
+            }
+            // -- Translators keep properties and state of the current translation -
+            // -- in their fields, every schema gets its own instance --------------
+            AbstractCimTranslator t = newInstance(prototype);
+            if (trProps != null) {
+                ValidationResult vr = t.validateProperties(path, trProps);
+                if (!vr.isValid()) {
+                    for (String e : vr.getErrors()) {
+                        errors.add(name + ": " + e.replace('\n', ' '));
+                    }
+                    return;
+                }
+            }
+            t.setProperties(trProps); // Properties by default if null
+            t.translate(s, path);
+            timings.put(name, System.nanoTime() - started);
+        } catch (NamedElementNotFoundException | CimTranslatorError e) {
+            errors.add(name + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            Logger.getLogger(SchemaTranslation.class.getName()).log(Level.SEVERE, file.getPath(), e);
+            errors.add(name + ": " + e);
+        }
+    }
+
+    private static AbstractCimTranslator newInstance(AbstractCimTranslator prototype) {
+        try {
+            return prototype.getClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Translator " + prototype.getName() + " can not be instantiated.", e);
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean isFailed() {
+        return !errors.isEmpty();
+    }
+
+    /**
+     * A schema is skipped if no translators have been run for it.
+     */
+    boolean isSkipped() {
+        return !isFailed() && timings.size() == 1;
+    }
+
+    /**
+     * Time of reading and of every translator in nanoseconds, in the order of
+     * execution.
+     */
+    Map<String, Long> getTimings() {
+        return timings;
+    }
+
+    List<String> getErrors() {
+        return errors;
+    }
+
+    long getTotalTime() {
+        return totalTime;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vrsl.jet.models.cim.Schema;
+import org.vrsl.jet.models.cim.persistence.ModelPersistenceException;
+import org.vrsl.jet.models.cim.persistence.ModelReaderFactory;
+import org.vrsl.jet.models.cim.persistence.ModelWriter;
+import org.vrsl.jet.models.cim.persistence.ModelWriterFactory;
+import org.vrsl.jet.models.erd.variants.ErdVariantsFactory;
+
+/**
+ * Reading and writing of schemas by every persistence engine. Each engine
+ * reads the output of its own writer, SIMPLE_XML stands for the DOM based
+ * reader and writer. BINARY encodes variants with the ERD variants factory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ModelPersistenceBenchmark {
+
+    @Param({"100", "1000"})
+    public int entities;
+    @Param({"8"})
+    public int properties;
+    @Param({"SIMPLE_XML", "STREAMING_XML", "BINARY"})
+    public String engine;
+
+    private Schema schema;
+    private byte[] content;
+
+    @Setup
+    public void setUp() throws ModelPersistenceException {
+        schema = SchemaGenerator.generate(entities, entities * 3 / 2, properties);
+        ByteArrayOutputStream sysOut = new ByteArrayOutputStream();
+        newWriter().write(sysOut, schema);
+        content = sysOut.toByteArray();
+    }
+
+    @Benchmark
+    public Schema read() throws ModelPersistenceException {
+        return ModelReaderFactory.newInstance(new ErdVariantsFactory(), ModelReaderFactory.Engine.valueOf(engine))
+                .read(new ByteArrayInputStream(content));
+    }
+
+    @Benchmark
+    public int write() throws ModelPersistenceException {
+        ByteArrayOutputStream sysOut = new ByteArrayOutputStream(content.length);
+        newWriter().write(sysOut, schema);
+        return sysOut.size();
+    }
+
+    private ModelWriter newWriter() {
+        return ModelWriterFactory.newInstance(ModelWriterFactory.Engine.valueOf(engine), new ErdVariantsFactory());
+    }
+}
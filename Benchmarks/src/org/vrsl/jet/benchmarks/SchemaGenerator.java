@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.benchmarks;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.vrsl.jet.models.cim.Association;
+import org.vrsl.jet.models.cim.Class;
+import org.vrsl.jet.models.cim.Property;
+import org.vrsl.jet.models.cim.Qualifier;
+import org.vrsl.jet.models.cim.Schema;
+import org.vrsl.jet.models.erd.ErdModelFactory;
+import org.vrsl.jet.models.erd.variants.associations.ErdModelEntityAssociation;
+import org.vrsl.jet.models.erd.variants.associations.ErdModelReferenceMultiplicity;
+import org.vrsl.jet.models.erd.variants.details.ErdModelColor;
+import org.vrsl.jet.models.erd.variants.details.ErdModelFont;
+import org.vrsl.jet.models.erd.variants.details.ErdModelLocation;
+import org.vrsl.jet.models.erd.variants.details.ErdModelMappingDetails;
+import org.vrsl.jet.models.erd.variants.details.ErdModelPath;
+import org.vrsl.jet.models.erd.variants.details.ErdModelPrimaryKey;
+import org.vrsl.jet.models.erd.variants.details.ErdModelSize;
+import org.vrsl.jet.models.erd.variants.entities.ErdModelEntity;
+import org.vrsl.jet.models.erd.variants.entities.ErdModelText;
+import org.vrsl.jet.models.erd.variants.types.ErdModelType;
+
+/**
+ * Builds synthetic ERD schemas of a given size the same way the editor stores
+ * them. The same arguments always give the same schema.
+ */
+public final class SchemaGenerator {
+
+    private static final String[] TYPES = {"int", "String", "long", "Date", "double"};
+
+    /**
+     * @param entities number of entities
+     * @param associations number of associations between the entities
+     * @param properties number of properties of every entity, the first one is
+     * the primary key
+     */
+    public static Schema generate(int entities, int associations, int properties) {
+        if (entities <= 0 && associations > 0) {
+            throw new IllegalArgumentException("Associations need at least one entity.");
+        }
+        Random random = new Random(entities * 31L + associations * 17L + properties);
+        Schema schema = ErdModelFactory.buildSchema("Bench" + entities, "/tmp/bench");
+        List<Class> classes = new ArrayList<>(entities);
+        // -- Entities with their fields and some free texts -----------------------------
+        for (int i = 0; i < entities; i++) {
+            Class c = ErdModelFactory.buildClass("Entity" + i);
+            c.add(new Qualifier<>(new ErdModelEntity()));
+            c.add(new Qualifier<>(new ErdModelLocation(random.nextInt(5000), random.nextInt(5000))));
+            c.add(new Qualifier<>(new ErdModelSize(0, 0)));
+            c.add(new Qualifier<>(new ErdModelColor(0, 0, 0)));
+            for (int j = 0; j < properties; j++) {
+                Property p = ErdModelFactory.buildProperty();
+                p.setName("field" + j);
+                p.add(new Qualifier<>(new ErdModelType(j == 0 ? "int" : TYPES[random.nextInt(TYPES.length)])));
+                p.add(new Qualifier<>(new ErdModelMappingDetails("", -1, -1)));
+                p.add(new Qualifier<>(new ErdModelPrimaryKey(j == 0, j == 0)));
+                c.add(p);
+            }
+            schema.add(c);
+            classes.add(c);
+            if (i % 10 == 0) {
+                Class t = ErdModelFactory.buildClass();
+                t.add(new Qualifier<>(new ErdModelText("Note " + i)));
+                t.add(new Qualifier<>(new ErdModelLocation(random.nextInt(5000), random.nextInt(5000))));
+                t.add(new Qualifier<>(new ErdModelFont("Arial", 14, 0)));
+                schema.add(t);
+            }
+        }
+        // -- Associations always go from an older entity to a newer one, so there are no cycles
+        for (int i = 0; i < associations; i++) {
+            int a = random.nextInt(entities);
+            int b = random.nextInt(entities);
+            Class from = classes.get(Math.min(a, b));
+            Class to = classes.get(Math.max(a, b));
+            Association association = ErdModelFactory.buildAssociation(
+                    ErdModelFactory.buildReference(from, new ErdModelReferenceMultiplicity(ErdModelReferenceMultiplicity.Category.ONE)),
+                    ErdModelFactory.buildReference(to, new ErdModelReferenceMultiplicity(ErdModelReferenceMultiplicity.Category.NONE_OR_MANY)));
+            association.add(new Qualifier<>(new ErdModelEntityAssociation()));
+            association.add(new Qualifier<>(new ErdModelPath(Arrays.asList(new Point(a, b), new Point(b, a)))));
+            schema.add(association);
+        }
+        return schema;
+    }
+
+    private SchemaGenerator() {
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vrsl.jet.models.cim.Association;
+import org.vrsl.jet.models.cim.NamedElement;
+import org.vrsl.jet.models.cim.Qualifier;
+import org.vrsl.jet.models.cim.Schema;
+import org.vrsl.jet.models.erd.variants.entities.ErdModelEntity;
+
+/**
+ * Lookups of schema elements by name, variant and type, on a schema being
+ * edited and on its immutable snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SchemaQueryBenchmark {
+
+    @Param({"100", "1000"})
+    public int entities;
+    @Param({"false", "true"})
+    public boolean snapshot;
+
+    private final Qualifier<ErdModelEntity> entityQualifier = new Qualifier<>(new ErdModelEntity());
+    private Schema schema;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Schema s = SchemaGenerator.generate(entities, entities * 3 / 2, 4);
+        schema = snapshot ? s.snapshot() : s;
+        names = new String[entities];
+        for (int i = 0; i < entities; i++) {
+            names[i] = "Entity" + i;
+        }
+    }
+
+    @Benchmark
+    public List<NamedElement> allElements() {
+        return schema.getElements();
+    }
+
+    @Benchmark
+    public List<NamedElement> byName() {
+        next = next + 1 < names.length ? next + 1 : 0;
+        return schema.getElements(names[next]);
+    }
+
+    @Benchmark
+    public List<NamedElement> byVariant() {
+        return schema.getElements(entityQualifier);
+    }
+
+    @Benchmark
+    public List<Association> byType() {
+        return schema.getElements(Association.class);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vrsl.jet.models.cim.Schema;
+import org.vrsl.jet.translators.AbstractCimTranslator;
+import org.vrsl.jet.translators.CimTranslatorError;
+import org.vrsl.jet.translators.erd.ErdModelToHibernateTranslator;
+import org.vrsl.jet.translators.erd.ErdModelToSqlTranslator;
+
+/**
+ * Translation of a schema snapshot into a temporary directory. The output
+ * directory is kept between invocations, so with unchanged files skipped
+ * only the first one writes files and the rest measure a schema translated
+ * again without changes; otherwise every invocation writes all files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TranslatorsBenchmark {
+
+    private static final String SKIP_UNCHANGED = "Skip Unchanged Files";
+    private static final String WORKER_THREADS = "Worker Threads";
+
+    @Param({"100", "1000"})
+    public int entities;
+    @Param({"8"})
+    public int properties;
+    @Param({"false", "true"})
+    public boolean skipUnchanged;
+
+    private Schema schema;
+    private Path output;
+
+    @Setup
+    public void setUp() throws IOException {
+        schema = SchemaGenerator.generate(entities, entities * 3 / 2, properties).snapshot();
+        output = Files.createTempDirectory("mdd-bench");
+        Files.createDirectory(output.resolve("sql"));
+        // -- Hibernate translator writes into the existing directory of its default package
+        Files.createDirectories(output.resolve("jpa").resolve("data"));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.walkFileTree(output, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Benchmark
+    public void translateToSql() throws CimTranslatorError {
+        ErdModelToSqlTranslator t = new ErdModelToSqlTranslator();
+        t.setProperties(properties(t));
+        t.translate(schema, output.resolve("sql").toString());
+    }
+
+    @Benchmark
+    public void translateToHibernate(HibernateOptions options) throws CimTranslatorError {
+        ErdModelToHibernateTranslator t = new ErdModelToHibernateTranslator();
+        Map<String, Object> props = properties(t);
+        props.put(WORKER_THREADS, options.workerThreads);
+        t.setProperties(props);
+        t.translate(schema, output.resolve("jpa").toString());
+    }
+
+    /**
+     * Default properties of the translator with the benchmark parameters.
+     */
+    private Map<String, Object> properties(AbstractCimTranslator t) {
+        Map<String, Object> res = t.getProperties();
+        res.put(SKIP_UNCHANGED, skipUnchanged);
+        return res;
+    }
+
+    /**
+     * Parameters of the Hibernate translator only, the SQL one is not run
+     * for each of them.
+     */
+    @State(Scope.Benchmark)
+    public static class HibernateOptions {
+
+        @Param({"1", "4"})
+        public int workerThreads;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.vrsl.jet.models.cim.Association;
+import org.vrsl.jet.models.cim.Class;
+import org.vrsl.jet.models.cim.NamedElement;
+import org.vrsl.jet.models.cim.Property;
+import org.vrsl.jet.models.cim.Qualifier;
+import org.vrsl.jet.models.cim.Reference;
+import org.vrsl.jet.models.cim.Schema;
+import org.vrsl.jet.models.erd.variants.ErdVariantsFactory;
+
+/**
+ * Building of all variants of a schema the way a reader does it, one factory
+ * per load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VariantsBenchmark {
+
+    @Param({"100", "1000"})
+    public int entities;
+    @Param({"8"})
+    public int properties;
+
+    private String[] types;
+    private String[] details;
+
+    @Setup
+    public void setUp() {
+        Schema schema = SchemaGenerator.generate(entities, entities * 3 / 2, properties);
+        List<Qualifier<?>> qualifiers = new ArrayList<>();
+        collect(schema, qualifiers);
+        for (NamedElement e : schema.getElements()) {
+            collect(e, qualifiers);
+            if (e instanceof Class) {
+                for (Property p : ((Class) e).getProperties()) {
+                    collect(p, qualifiers);
+                }
+            }
+            if (e instanceof Association) {
+                for (Reference r : ((Association) e).getReferences()) {
+                    collect(r, qualifiers);
+                }
+            }
+        }
+        types = new String[qualifiers.size()];
+        details = new String[qualifiers.size()];
+        for (int i = 0; i < types.length; i++) {
+            Object v = qualifiers.get(i).getValue();
+            types[i] = v.getClass().getSimpleName();
+            details[i] = v.toString();
+        }
+    }
+
+    private static void collect(NamedElement e, List<Qualifier<?>> qualifiers) {
+        qualifiers.addAll(e.getQualifiers());
+    }
+
+    @Benchmark
+    public void buildVariants(Blackhole bh) {
+        ErdVariantsFactory vf = new ErdVariantsFactory();
+        for (int i = 0; i < types.length; i++) {
+            bh.consume(vf.<Object>buildVariant(types[i], details[i]));
+        }
+    }
+}
@@ -51,6 +51,7 @@ public class Association extends Class {
     }
 
     public final synchronized void add(Reference reference) {
+        checkMutable();
         references.add(reference);
         reference.setAssociation(this);
     }
@@ -62,4 +63,10 @@ public class Association extends Class {
     public final List<Reference> getReferences(Qualifier<?> q) {
         return filterListElements(references, q);
     }
+
+    @Override
+    void freezeState() {
+        super.freezeState();
+        references = immutableCopy(references);
+    }
 }
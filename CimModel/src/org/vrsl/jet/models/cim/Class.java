@@ -30,19 +30,21 @@ import java.util.List;
 public class Class extends NamedElement {
 
     // -- Methods and properties ------------------------------
-    private final List<Property> properties = new ArrayList<>();
-    private final List<Method> methods = new ArrayList<>();
+    private List<Property> properties = new ArrayList<>();
+    private List<Method> methods = new ArrayList<>();
     // -- Class relations -------------------------------------
     private Class supertype;
-    private final List<Class> subtypes = new ArrayList<>();
-    private final List<Reference> range = new ArrayList<>();
+    private List<Class> subtypes = new ArrayList<>();
+    private List<Reference> range = new ArrayList<>();
 
     // == Properties ==========================================
     public final synchronized void add(Property property) {
+        checkMutable();
         properties.add(property);
     }
     
     public final synchronized void remove(Property property) {
+        checkMutable();
         properties.remove(property);
     }
     
@@ -56,10 +58,12 @@ public class Class extends NamedElement {
     
     // == Methods =============================================
     public final synchronized void add(Method method) {
+        checkMutable();
         methods.add(method);
     }
     
     public final synchronized void remove(Method method) {
+        checkMutable();
         methods.remove(method);
     }
     
@@ -73,10 +77,12 @@ public class Class extends NamedElement {
 
     // == Subtypes ============================================
     public final synchronized void add(Class subtype) {
+        checkMutable();
         subtypes.add(subtype);
     }
     
     public final synchronized void remove(Class subtype) {
+        checkMutable();
         subtypes.remove(subtype);
     }
     
@@ -90,19 +96,27 @@ public class Class extends NamedElement {
     
     // == Supertype ===========================================
     public final synchronized void setSuperType(Class value) {
+        checkMutable();
         supertype = value;
     }
     
-    public final synchronized Class getSuperType() {
-        return supertype;
+    public final Class getSuperType() {
+        if (isFrozen()) {
+            return supertype;
+        }
+        synchronized (this) {
+            return supertype;
+        }
     }
     
     // == Range ===============================================
     public final synchronized void addRange(Reference reference) {
+        checkMutable();
         range.add(reference);
     }
     
     public final synchronized void removeRange(Reference reference) {
+        checkMutable();
         range.remove(reference);
     }
     
@@ -113,4 +127,13 @@ public class Class extends NamedElement {
     public final List<Reference> getRange(Qualifier<?> q) {
         return filterListElements(range, q);
     }
+
+    @Override
+    void freezeState() {
+        super.freezeState();
+        properties = immutableCopy(properties);
+        methods = immutableCopy(methods);
+        subtypes = immutableCopy(subtypes);
+        range = immutableCopy(range);
+    }
 }
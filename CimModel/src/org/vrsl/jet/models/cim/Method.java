@@ -28,22 +28,30 @@ import java.util.List;
 
 public class Method extends NamedElement {
     private Method overriden;
-    private final List<Method> overrides = new ArrayList<>();
+    private List<Method> overrides = new ArrayList<>();
     private Class domain;
     
     public final synchronized void setOverriden(Method override) {
+        checkMutable();
         this.overriden = override;
     }
     
-    public final synchronized Method getOverriden() {
-        return overriden;
+    public final Method getOverriden() {
+        if (isFrozen()) {
+            return overriden;
+        }
+        synchronized (this) {
+            return overriden;
+        }
     }
     
     public final synchronized void add(Method override) {
+        checkMutable();
         overrides.add(override);
     }
     
     public final synchronized void remove(Method override) {
+        checkMutable();
         overrides.remove(override);
     }
     
@@ -52,10 +60,22 @@ public class Method extends NamedElement {
     }
     
     public final synchronized void setDomain(Class domain) {
+        checkMutable();
         this.domain = domain;
     }
     
-    public final synchronized Class getDomain() {
-        return domain;
+    public final Class getDomain() {
+        if (isFrozen()) {
+            return domain;
+        }
+        synchronized (this) {
+            return domain;
+        }
+    }
+
+    @Override
+    void freezeState() {
+        super.freezeState();
+        overrides = immutableCopy(overrides);
     }
 }
@@ -0,0 +1,46 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.models.cim;
+
+/**
+ * Qualifier value whose state can be changed after it has been created.
+ * Snapshots of a schema can't share such values with the editable schema, so
+ * each snapshot gets its own frozen copies of them. All the other values are
+ * shared and have to be immutable.
+ *
+ * @param <T> type of the value
+ */
+public interface MutableVariant<T extends MutableVariant<T>> {
+
+    /**
+     * @return copy of the value which does not share any mutable state with it
+     */
+    T copy();
+
+    /**
+     * Makes the value immutable, every attempt to change it fails with
+     * {@link IllegalStateException} from now on.
+     */
+    void freeze();
+}
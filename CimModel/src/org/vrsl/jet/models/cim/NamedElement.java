@@ -24,103 +24,192 @@
 package org.vrsl.jet.models.cim;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public abstract class NamedElement {
 
     private String name;
-    private final List<Qualifier<?>> qualifiers = new ArrayList<>();
-    private final List<Trigger> triggers = new ArrayList<>();
+    private List<Qualifier<?>> qualifiers = new ArrayList<>();
+    private Map<java.lang.Class<?>, List<Qualifier<?>>> qualifiersByVariant;
+    private List<Trigger> triggers = new ArrayList<>();
     private Schema schema;
+    // -- Set once the element became a part of a schema snapshot -------------------
+    private volatile boolean frozen = false;
 
-    public final synchronized String getName() {
-        return name;
+    public final String getName() {
+        if (frozen) {
+            return name;
+        }
+        synchronized (this) {
+            return name;
+        }
     }
 
-    public final synchronized void setName(String value) {
-        name = value;
+    public final void setName(String value) {
+        Schema owner;
+        String previous;
+        synchronized (this) {
+            checkMutable();
+            previous = name;
+            name = value;
+            owner = schema;
+        }
+        // -- Keeping schema indexes in step, outside of the element's monitor ---------
+        if (owner != null) {
+            owner.elementRenamed(this, previous);
+        }
     }
 
     public final List<Qualifier<?>> getQualifiers() {
-        List<Qualifier<?>> res;
-        synchronized (this) {
-            res = new ArrayList<>(qualifiers);
+        return difensiveCopy(qualifiers);
+    }
+
+    public final <T> Qualifier<T> getFirstByVariantType(java.lang.Class<T> variantType) throws NamedElementNotFoundException {
+        Qualifier<T> res = findFirstByVariantType(variantType);
+        if (res == null) {
+            throw new NamedElementNotFoundException("Qualifier with " + variantType.getName() + " has not been found.");
         }
         return res;
     }
 
+    /**
+     * Looks for the first qualifier with a given variant type.
+     *
+     * @return the qualifier or null if the element has no such qualifier
+     */
     @SuppressWarnings("unchecked")
-    public final <T> Qualifier<T> getFirstByVariantType(java.lang.Class<T> variantType) throws NamedElementNotFoundException {
+    public final <T> Qualifier<T> findFirstByVariantType(java.lang.Class<T> variantType) {
+        if (frozen) {
+            List<Qualifier<?>> bucket = variantBucket(variantType);
+            return bucket.isEmpty() ? null : (Qualifier<T>) bucket.get(0);
+        }
         synchronized (this) {
-            for (Qualifier<?> q : qualifiers) {
-                if (q.getValue().getClass().equals(variantType)) {
-                    return (Qualifier<T>) q;
-                }
-            }
+            List<Qualifier<?>> bucket = variantBucket(variantType);
+            return bucket.isEmpty() ? null : (Qualifier<T>) bucket.get(0);
         }
-        throw new NamedElementNotFoundException("Qualifier with " + variantType.getName() + " has not been found.");
     }
 
     @SuppressWarnings("unchecked")
     public final <T> List<Qualifier<T>> getByVariantType(java.lang.Class<T> variantType) throws NamedElementNotFoundException {
-        List<Qualifier<T>> res = new ArrayList<>();
+        if (frozen) {
+            return (List<Qualifier<T>>) (List<?>) variantBucket(variantType);
+        }
+        List<Qualifier<T>> res;
         synchronized (this) {
-            for (Qualifier<?> q : qualifiers) {
-                if (q.getValue().getClass().equals(variantType)) {
-                    res.add((Qualifier<T>) q);
-                }
-            }
+            res = new ArrayList<>((List<Qualifier<T>>) (List<?>) variantBucket(variantType));
         }
         return res;
     }
 
     public final <T> boolean hasVariantTypeQualifier(java.lang.Class<T> variantType) {
+        if (frozen) {
+            return !variantBucket(variantType).isEmpty();
+        }
+        synchronized (this) {
+            return !variantBucket(variantType).isEmpty();
+        }
+    }
+
+    public final <T> void add(Qualifier<T> quail) {
+        Schema owner;
         synchronized (this) {
-            for (Qualifier<?> q : qualifiers) {
-                if (q.getValue().getClass().equals(variantType)) {
-                    return true;
+            checkMutable();
+            qualifiers.add(quail);
+            if (quail.getValue() != null) {
+                if (qualifiersByVariant == null) {
+                    qualifiersByVariant = new HashMap<>();
+                }
+                List<Qualifier<?>> bucket = qualifiersByVariant.get(quail.getValue().getClass());
+                if (bucket == null) {
+                    bucket = new ArrayList<>(1);
+                    qualifiersByVariant.put(quail.getValue().getClass(), bucket);
                 }
+                bucket.add(quail);
             }
+            owner = schema;
+        }
+        if (owner != null) {
+            owner.qualifierAdded(this, quail);
         }
-        return false;
     }
 
-    public final synchronized <T> void add(Qualifier<T> quail) {
-        qualifiers.add(quail);
+    public final <T> void remove(Qualifier<T> quail) {
+        Schema owner;
+        Qualifier<?> removed = null;
+        synchronized (this) {
+            checkMutable();
+            int index = qualifiers.indexOf(quail);
+            if (index >= 0) {
+                removed = qualifiers.remove(index);
+                if (removed.getValue() != null) {
+                    List<Qualifier<?>> bucket = qualifiersByVariant.get(removed.getValue().getClass());
+                    for (int i = 0; i < bucket.size(); i++) {
+                        if (bucket.get(i) == removed) {
+                            bucket.remove(i);
+                            break;
+                        }
+                    }
+                    if (bucket.isEmpty()) {
+                        qualifiersByVariant.remove(removed.getValue().getClass());
+                    }
+                }
+            }
+            owner = schema;
+        }
+        if (owner != null && removed != null) {
+            owner.qualifierRemoved(this, removed);
+        }
     }
 
-    public final synchronized <T> void remove(Qualifier<T> quail) {
-        qualifiers.remove(quail);
+    private List<Qualifier<?>> variantBucket(java.lang.Class<?> variantType) {
+        List<Qualifier<?>> bucket = qualifiersByVariant == null ? null : qualifiersByVariant.get(variantType);
+        return bucket == null ? Collections.<Qualifier<?>>emptyList() : bucket;
     }
 
     public final List<Trigger> getTriggers() {
-        List<Trigger> res;
-        synchronized (this) {
-            res = new ArrayList<>(triggers);
-        }
-        return res;
+        return difensiveCopy(triggers);
     }
 
     public final synchronized void add(Trigger trigger) {
+        checkMutable();
         triggers.add(trigger);
     }
 
     public final synchronized void remove(Trigger trigger) {
+        checkMutable();
         triggers.remove(trigger);
     }
 
     public final synchronized void setSchema(Schema schema) {
+        checkMutable();
         this.schema = schema;
     }
 
-    public final synchronized Schema getSchema() {
-        return schema;
+    public final Schema getSchema() {
+        if (frozen) {
+            return schema;
+        }
+        synchronized (this) {
+            return schema;
+        }
+    }
+
+    /**
+     * @return true if the element belongs to a schema snapshot and can't be
+     * changed anymore
+     */
+    public final boolean isFrozen() {
+        return frozen;
     }
 
-    protected final synchronized <T extends NamedElement> List<T> filterListElements(Collection<T> elements, Qualifier<?> q) {
+    protected final <T extends NamedElement> List<T> filterListElements(Collection<T> elements, Qualifier<?> q) {
         List<T> res = new ArrayList<>();
-        for (T e : elements) {
+        for (T e : snapshotOf(elements)) {
             for (Qualifier<?> eq : e.getQualifiers()) {
                 if (eq.getValue().getClass().equals(q.getValue().getClass())) {
                     res.add(e);
@@ -130,9 +219,9 @@ public abstract class NamedElement {
         return res;
     }
 
-    protected final synchronized <T extends NamedElement> List<T> filterListElements(Collection<T> elements, String name) {
+    protected final <T extends NamedElement> List<T> filterListElements(Collection<T> elements, String name) {
         List<T> res = new ArrayList<>();
-        for (T e : elements) {
+        for (T e : snapshotOf(elements)) {
             if (name.equals(e.getName())) {
                 res.add(e);
             }
@@ -140,9 +229,9 @@ public abstract class NamedElement {
         return res;
     }
 
-    protected final synchronized <T extends NamedElement> List<T> filterListElements(Collection<T> elements, java.lang.Class<T> c) {
+    protected final <T extends NamedElement> List<T> filterListElements(Collection<T> elements, java.lang.Class<T> c) {
         List<T> res = new ArrayList<>();
-        for (T e : elements) {
+        for (T e : snapshotOf(elements)) {
             if (c.equals(e.getClass())) {
                 res.add(e);
             }
@@ -151,10 +240,59 @@ public abstract class NamedElement {
     }
 
     protected final <T> List<T> difensiveCopy(List<T> elements) {
+        if (frozen) {
+            return elements;
+        }
         List<T> res;
         synchronized (this) {
             res = new ArrayList<>(elements);
         }
         return res;
     }
+
+    private <T> Collection<T> snapshotOf(Collection<T> elements) {
+        if (frozen) {
+            return elements;
+        }
+        Collection<T> res;
+        synchronized (this) {
+            res = new ArrayList<>(elements);
+        }
+        return res;
+    }
+
+    protected final void checkMutable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Element " + name + " belongs to a schema snapshot and can't be changed.");
+        }
+    }
+
+    /**
+     * Makes the element immutable. All the state is replaced with unmodifiable
+     * array based copies first and published by the volatile flag then, so the
+     * getters can skip the monitor afterwards.
+     */
+    final void freeze() {
+        synchronized (this) {
+            freezeState();
+        }
+        frozen = true;
+    }
+
+    void freezeState() {
+        qualifiers = immutableCopy(qualifiers);
+        triggers = immutableCopy(triggers);
+        if (qualifiersByVariant != null) {
+            Map<java.lang.Class<?>, List<Qualifier<?>>> variants = new HashMap<>();
+            for (Map.Entry<java.lang.Class<?>, List<Qualifier<?>>> item : qualifiersByVariant.entrySet()) {
+                variants.put(item.getKey(), immutableCopy(item.getValue()));
+            }
+            qualifiersByVariant = Collections.unmodifiableMap(variants);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> List<T> immutableCopy(List<T> elements) {
+        return Collections.unmodifiableList(Arrays.asList((T[]) elements.toArray()));
+    }
 }
@@ -28,22 +28,30 @@ import java.util.List;
 
 public class Property extends NamedElement {
     private Property overriden;
-    private final List<Property> overrides = new ArrayList<>();
+    private List<Property> overrides = new ArrayList<>();
     private Class domain;
     
     public final synchronized void setOverriden(Property override) {
+        checkMutable();
         this.overriden = override;
     }
     
-    public final synchronized Property getOverriden() {
-        return overriden;
+    public final Property getOverriden() {
+        if (isFrozen()) {
+            return overriden;
+        }
+        synchronized (this) {
+            return overriden;
+        }
     }
     
     public final synchronized void add(Property override) {
+        checkMutable();
         overrides.add(override);
     }
     
     public final synchronized void remove(Property override) {
+        checkMutable();
         overrides.remove(override);
     }
     
@@ -52,10 +60,22 @@ public class Property extends NamedElement {
     }
     
     public final synchronized void setDomain(Class domain) {
+        checkMutable();
         this.domain = domain;
     }
     
-    public final synchronized Class getDomain() {
-        return domain;
+    public final Class getDomain() {
+        if (isFrozen()) {
+            return domain;
+        }
+        synchronized (this) {
+            return domain;
+        }
+    }
+
+    @Override
+    void freezeState() {
+        super.freezeState();
+        overrides = immutableCopy(overrides);
     }
 }
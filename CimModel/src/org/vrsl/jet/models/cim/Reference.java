@@ -32,15 +32,21 @@ public class Reference extends Property {
         this.referedClass = referedClass;
     }
     
-    public final synchronized Class getReferedClass() {
+    public final Class getReferedClass() {
         return referedClass;
     }
     
     public final synchronized void setAssociation(Association association) {
+        checkMutable();
         this.association = association;
     }
     
-    public final synchronized Association getAssociation() {
-        return association;
+    public final Association getAssociation() {
+        if (isFrozen()) {
+            return association;
+        }
+        synchronized (this) {
+            return association;
+        }
     }
 }
@@ -24,49 +24,236 @@
 package org.vrsl.jet.models.cim;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Schema extends NamedElement {
 
-    @SuppressWarnings("unchecked")
-    private static <T extends NamedElement> Collection<T> extractTypes(List<NamedElement> elements) {
-        Collection<T> res = new LinkedList<>();
-        for (NamedElement e : elements) {
-            res.add((T) e);
-        }
-        return res;
-    }
-
-    private final List<NamedElement> elements = new ArrayList<>();
+    private List<NamedElement> elements = new ArrayList<>();
+    // -- Lookup indexes, each list keeps elements in the order of addition -----------
+    private Map<String, List<NamedElement>> nameIndex = new HashMap<>();
+    private Map<java.lang.Class<?>, List<NamedElement>> typeIndex = new HashMap<>();
+    private Map<java.lang.Class<?>, List<NamedElement>> variantIndex = new HashMap<>();
+    private Map<NamedElement, Membership> members = new IdentityHashMap<>();
+    private int nextOrdinal = 0;
 
     public final synchronized void add(NamedElement element) {
+        checkMutable();
         element.setSchema(this);
         elements.add(element);
+        // -- Registering the element in all indexes ----------------------------------
+        Membership m = members.get(element);
+        if (m == null) {
+            m = new Membership(nextOrdinal++);
+            members.put(element, m);
+        }
+        m.count++;
+        index(nameIndex, element.getName(), element);
+        index(typeIndex, element.getClass(), element);
+        for (Qualifier<?> q : element.getQualifiers()) {
+            if (q.getValue() != null) {
+                index(variantIndex, q.getValue().getClass(), element);
+            }
+        }
     }
 
     public final synchronized void remove(NamedElement element) {
-        elements.remove(element);
+        checkMutable();
+        if (!elements.remove(element)) {
+            return;
+        }
+        // -- Dropping one occurrence of the element from all indexes -----------------
+        Membership m = members.get(element);
+        if (--m.count == 0) {
+            members.remove(element);
+        }
+        unindex(nameIndex, element.getName(), element);
+        unindex(typeIndex, element.getClass(), element);
+        for (Qualifier<?> q : element.getQualifiers()) {
+            if (q.getValue() != null) {
+                unindex(variantIndex, q.getValue().getClass(), element);
+            }
+        }
     }
 
     public final List<NamedElement> getElements() {
         return difensiveCopy(elements);
     }
 
-    public final synchronized <T extends NamedElement> List<T> getElements(Qualifier<?> q) {
-        Collection<T> e = extractTypes(elements);
-        return filterListElements(e, q);
+    public final <T extends NamedElement> List<T> getElements(Qualifier<?> q) {
+        if (isFrozen()) {
+            return shared(variantIndex, q.getValue().getClass());
+        }
+        synchronized (this) {
+            return lookup(variantIndex, q.getValue().getClass());
+        }
+    }
+
+    public final <T extends NamedElement> List<T> getElements(String name) {
+        if (isFrozen()) {
+            return shared(nameIndex, name);
+        }
+        synchronized (this) {
+            return lookup(nameIndex, name);
+        }
+    }
+
+    public final <T extends NamedElement> List<T> getElements(java.lang.Class<T> cl) {
+        if (isFrozen()) {
+            return shared(typeIndex, cl);
+        }
+        synchronized (this) {
+            return lookup(typeIndex, cl);
+        }
+    }
+
+    // == Snapshots ===========================================
+    /**
+     * Builds an immutable deep copy of the schema. The snapshot and all its
+     * elements can be read from any number of threads without locking while
+     * the original schema stays editable. Qualifier values are shared with
+     * the original schema unless they are {@link MutableVariant}s, those are
+     * copied and frozen.
+     *
+     * @return the snapshot or the schema itself if it is a snapshot already
+     */
+    public final Schema snapshot() {
+        if (isFrozen()) {
+            return this;
+        }
+        // -- Schema content can't be changed while it is being copied -----------------
+        synchronized (this) {
+            return new SchemaSnapshotBuilder(this).build();
+        }
+    }
+
+    @Override
+    void freezeState() {
+        super.freezeState();
+        elements = immutableCopy(elements);
+        nameIndex = immutableIndex(nameIndex);
+        typeIndex = immutableIndex(typeIndex);
+        variantIndex = immutableIndex(variantIndex);
+        // -- Snapshot can't be changed so membership is not needed anymore -----------
+        members = Collections.emptyMap();
+    }
+
+    // == Index maintenance ===================================
+    final synchronized void elementRenamed(NamedElement element, String previous) {
+        Membership m = members.get(element);
+        if (m == null) {
+            return;
+        }
+        for (int i = 0; i < m.count; i++) {
+            unindex(nameIndex, previous, element);
+            reindex(nameIndex, element.getName(), element, m.ordinal);
+        }
+    }
+
+    final synchronized void qualifierAdded(NamedElement element, Qualifier<?> q) {
+        Membership m = members.get(element);
+        if (m == null || q.getValue() == null) {
+            return;
+        }
+        for (int i = 0; i < m.count; i++) {
+            reindex(variantIndex, q.getValue().getClass(), element, m.ordinal);
+        }
+    }
+
+    final synchronized void qualifierRemoved(NamedElement element, Qualifier<?> q) {
+        Membership m = members.get(element);
+        if (m == null || q.getValue() == null) {
+            return;
+        }
+        for (int i = 0; i < m.count; i++) {
+            unindex(variantIndex, q.getValue().getClass(), element);
+        }
+    }
+
+    private static <K> void index(Map<K, List<NamedElement>> index, K key, NamedElement element) {
+        List<NamedElement> bucket = index.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>(1);
+            index.put(key, bucket);
+        }
+        bucket.add(element);
+    }
+
+    /**
+     * Puts an already added element back into the index at the position which
+     * corresponds to the order of addition.
+     */
+    private <K> void reindex(Map<K, List<NamedElement>> index, K key, NamedElement element, int ordinal) {
+        List<NamedElement> bucket = index.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>(1);
+            index.put(key, bucket);
+        }
+        int low = 0;
+        int high = bucket.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (members.get(bucket.get(mid)).ordinal <= ordinal) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        bucket.add(low, element);
+    }
+
+    private static <K> void unindex(Map<K, List<NamedElement>> index, K key, NamedElement element) {
+        List<NamedElement> bucket = index.get(key);
+        if (bucket == null) {
+            return;
+        }
+        for (int i = 0; i < bucket.size(); i++) {
+            if (bucket.get(i) == element) {
+                bucket.remove(i);
+                break;
+            }
+        }
+        if (bucket.isEmpty()) {
+            index.remove(key);
+        }
     }
 
-    public final synchronized <T extends NamedElement> List<T> getElements(String name) {
-        Collection<T> e = extractTypes(elements);
-        return filterListElements(e, name);
+    @SuppressWarnings("unchecked")
+    private static <K, T extends NamedElement> List<T> lookup(Map<K, List<NamedElement>> index, K key) {
+        List<NamedElement> bucket = index.get(key);
+        if (bucket == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>((List<T>) (List<?>) bucket);
     }
 
-    public final synchronized <T extends NamedElement> List<T> getElements(java.lang.Class<T> cl) {
-        Collection<T> e = extractTypes(elements);
-        return filterListElements(e, cl);
+    @SuppressWarnings("unchecked")
+    private static <K, T extends NamedElement> List<T> shared(Map<K, List<NamedElement>> index, K key) {
+        List<NamedElement> bucket = index.get(key);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        return (List<T>) (List<?>) bucket;
     }
 
+    private static <K> Map<K, List<NamedElement>> immutableIndex(Map<K, List<NamedElement>> index) {
+        Map<K, List<NamedElement>> res = new HashMap<>();
+        for (Map.Entry<K, List<NamedElement>> item : index.entrySet()) {
+            res.put(item.getKey(), immutableCopy(item.getValue()));
+        }
+        return Collections.unmodifiableMap(res);
+    }
+
+    private static final class Membership {
+
+        private final int ordinal;
+        private int count;
+
+        Membership(int ordinal) {
+            this.ordinal = ordinal;
+        }
+    }
 }
@@ -0,0 +1,216 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.models.cim;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deep copies a schema into a graph of frozen elements. Every source element
+ * is copied exactly once, so all the cross references of the original graph
+ * point to the corresponding copies. Immutable variant values are shared,
+ * mutable ones are copied and frozen.
+ */
+final class SchemaSnapshotBuilder {
+
+    private final Schema source;
+    private final Map<NamedElement, NamedElement> copies = new IdentityHashMap<>();
+    private final List<Reference> references = new ArrayList<>();
+
+    SchemaSnapshotBuilder(Schema source) {
+        this.source = source;
+    }
+
+    Schema build() {
+        Schema res = copy(source);
+        // -- Reference back links are restored when all associations are copied -----
+        for (Reference r : references) {
+            Association a = r.getAssociation();
+            if (a != null) {
+                ((Reference) copies.get(r)).setAssociation(copy(a));
+            }
+        }
+        // -- Freezing everything at once, nothing can be changed from now on ----------
+        for (NamedElement e : copies.values()) {
+            e.freeze();
+        }
+        return res;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends NamedElement> T copy(T e) {
+        if (e == null) {
+            return null;
+        }
+        NamedElement res = copies.get(e);
+        if (res != null) {
+            return (T) res;
+        }
+        if (e instanceof Association) {
+            res = copyAssociation((Association) e);
+        } else if (e instanceof Indication) {
+            res = copyClass((Class) e, new Indication());
+        } else if (e instanceof Class) {
+            res = copyClass((Class) e, new Class());
+        } else if (e instanceof Reference) {
+            res = copyReference((Reference) e);
+        } else if (e instanceof Property) {
+            res = copyProperty((Property) e, new Property());
+        } else if (e instanceof Method) {
+            res = copyMethod((Method) e);
+        } else if (e instanceof Trigger) {
+            res = copyTrigger((Trigger) e);
+        } else if (e instanceof Qualifier) {
+            res = remember(e, new Qualifier<>(copyValue(((Qualifier<?>) e).getValue())));
+            copyCommon(e, res);
+        } else if (e instanceof Schema) {
+            res = copySchema((Schema) e);
+        } else {
+            throw new IllegalStateException("Snapshot of " + e.getClass().getName() + " is not supported.");
+        }
+        return (T) res;
+    }
+
+    private Schema copySchema(Schema e) {
+        Schema res = remember(e, new Schema());
+        copyCommon(e, res);
+        for (NamedElement item : e.getElements()) {
+            res.add(copy(item));
+        }
+        return res;
+    }
+
+    private Class copyClass(Class e, Class res) {
+        remember(e, res);
+        copyCommon(e, res);
+        copyClassMembers(e, res);
+        return res;
+    }
+
+    private Association copyAssociation(Association e) {
+        List<Reference> refs = new ArrayList<>();
+        for (Reference r : e.getReferences()) {
+            refs.add(copy(r));
+        }
+        // -- Association could be reached while its references were copied ----------
+        if (copies.containsKey(e)) {
+            return (Association) copies.get(e);
+        }
+        Association res = remember(e, new Association(refs.get(0), refs.get(1)));
+        for (int i = 2; i < refs.size(); i++) {
+            res.add(refs.get(i));
+        }
+        copyCommon(e, res);
+        copyClassMembers(e, res);
+        return res;
+    }
+
+    private void copyClassMembers(Class e, Class res) {
+        for (Property p : e.getProperties()) {
+            res.add(copy(p));
+        }
+        for (Method m : e.getMethdos()) {
+            res.add(copy(m));
+        }
+        for (Class c : e.getSubTypes()) {
+            res.add(copy(c));
+        }
+        res.setSuperType(copy(e.getSuperType()));
+        for (Reference r : e.getRange()) {
+            res.addRange(copy(r));
+        }
+    }
+
+    private Reference copyReference(Reference e) {
+        Class referedClass = copy(e.getReferedClass());
+        // -- Reference could be reached while its class was copied -------------------
+        if (copies.containsKey(e)) {
+            return (Reference) copies.get(e);
+        }
+        Reference res = new Reference(referedClass);
+        references.add(e);
+        return (Reference) copyProperty(e, res);
+    }
+
+    private Property copyProperty(Property e, Property res) {
+        remember(e, res);
+        copyCommon(e, res);
+        res.setOverriden(copy(e.getOverriden()));
+        for (Property p : e.getOverrides()) {
+            res.add(copy(p));
+        }
+        res.setDomain(copy(e.getDomain()));
+        return res;
+    }
+
+    private Method copyMethod(Method e) {
+        Method res = remember(e, new Method());
+        copyCommon(e, res);
+        res.setOverriden(copy(e.getOverriden()));
+        for (Method m : e.getOverrides()) {
+            res.add(copy(m));
+        }
+        res.setDomain(copy(e.getDomain()));
+        return res;
+    }
+
+    private Trigger copyTrigger(Trigger e) {
+        Trigger res = remember(e, new Trigger());
+        copyCommon(e, res);
+        for (NamedElement item : e.getElements()) {
+            res.add(copy(item));
+        }
+        return res;
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof MutableVariant) {
+            MutableVariant<?> res = ((MutableVariant<?>) value).copy();
+            res.freeze();
+            return res;
+        }
+        return value;
+    }
+
+    private void copyCommon(NamedElement e, NamedElement res) {
+        res.setName(e.getName());
+        for (Qualifier<?> q : e.getQualifiers()) {
+            res.add(copy(q));
+        }
+        for (Trigger t : e.getTriggers()) {
+            res.add(copy(t));
+        }
+        Schema owner = e.getSchema();
+        if (owner != null && res.getSchema() == null) {
+            res.setSchema(copy(owner));
+        }
+    }
+
+    private <T extends NamedElement> T remember(NamedElement e, T res) {
+        copies.put(e, res);
+        return res;
+    }
+}
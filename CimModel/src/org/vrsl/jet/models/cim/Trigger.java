@@ -28,21 +28,35 @@ import java.util.List;
 
 public class Trigger extends NamedElement {
     
-    private final List<NamedElement> elements = new ArrayList<>();
+    private List<NamedElement> elements = new ArrayList<>();
     
     public Trigger(NamedElement element) {
         add(element);
     }
+
+    /**
+     * Creates a trigger without elements, used to copy triggers.
+     */
+    Trigger() {
+    }
     
     public final synchronized void add(NamedElement element) {
+        checkMutable();
         elements.add(element);
     }
     
     public final synchronized void remove(NamedElement element) {
+        checkMutable();
         elements.remove(element);
     }
     
     public final List<NamedElement> getElements() {
         return difensiveCopy(elements);
     }
+
+    @Override
+    void freezeState() {
+        super.freezeState();
+        elements = immutableCopy(elements);
+    }
 }
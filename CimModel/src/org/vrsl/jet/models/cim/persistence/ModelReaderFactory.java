@@ -23,7 +23,9 @@
  */
 package org.vrsl.jet.models.cim.persistence;
 
+import org.vrsl.jet.models.internals.persistance.sbin.BinarySimpleReader;
 import org.vrsl.jet.models.internals.persistance.sxml.XmlSimpleReader;
+import org.vrsl.jet.models.internals.persistance.sxml.XmlStreamingReader;
 
 /**
  *
@@ -32,13 +34,46 @@ import org.vrsl.jet.models.internals.persistance.sxml.XmlSimpleReader;
 public class ModelReaderFactory {
     
     public static ModelReader newInstance(VariantsFactory vf){
+        return newInstance(vf, Engine.STREAMING_XML);
+    }
+
+    public static ModelReader newInstance(VariantsFactory vf, Engine engine){
         if(vf == null) {
             throw new IllegalArgumentException("VariantsFactory must be specified.");
         }
-        return new XmlSimpleReader(vf);
+        if(engine == null) {
+            throw new IllegalArgumentException("Engine must be specified.");
+        }
+        switch (engine) {
+            case SIMPLE_XML:
+                return new XmlSimpleReader(vf);
+            case STREAMING_XML:
+                return new XmlStreamingReader(vf);
+            case BINARY:
+                return new BinarySimpleReader(vf);
+            default:
+                throw new IllegalArgumentException("Engine " + engine + " has not been supported yet.");
+        }
     }
 
     private ModelReaderFactory() {
     }
-    
+
+    public enum Engine {
+
+        /**
+         * DOM and XPath based reader.
+         */
+        SIMPLE_XML,
+        /**
+         * Single pass StAX based reader, builds the same schema as SIMPLE_XML.
+         */
+        STREAMING_XML,
+        /**
+         * Reader of the compact binary format, builds the same schema as
+         * SIMPLE_XML. Encoded variants require a variants factory which is a
+         * {@link VariantsCodec}.
+         */
+        BINARY
+    }
 }
@@ -23,7 +23,9 @@
  */
 package org.vrsl.jet.models.cim.persistence;
 
+import org.vrsl.jet.models.internals.persistance.sbin.BinarySimpleWriter;
 import org.vrsl.jet.models.internals.persistance.sxml.XmlSimpleWriter;
+import org.vrsl.jet.models.internals.persistance.sxml.XmlStreamingWriter;
 
 /**
  *
@@ -32,9 +34,58 @@ import org.vrsl.jet.models.internals.persistance.sxml.XmlSimpleWriter;
 public class ModelWriterFactory {
 
     public static ModelWriter newInstance() {
-        return new XmlSimpleWriter();
+        return newInstance(Engine.STREAMING_XML);
+    }
+
+    public static ModelWriter newInstance(Engine engine) {
+        return newInstance(engine, null);
+    }
+
+    /**
+     * @param codec encodes variants written by the BINARY engine, variants are
+     * written as their text if it is null; other engines ignore it
+     */
+    public static ModelWriter newInstance(Engine engine, VariantsCodec codec) {
+        if (engine == null) {
+            throw new IllegalArgumentException("Engine must be specified.");
+        }
+        switch (engine) {
+            case SIMPLE_XML:
+                return new XmlSimpleWriter();
+            case STREAMING_XML:
+                return new XmlStreamingWriter(false);
+            case INDENTED_XML:
+                return new XmlStreamingWriter(true);
+            case BINARY:
+                return new BinarySimpleWriter(codec);
+            default:
+                throw new IllegalArgumentException("Engine " + engine + " has not been supported yet.");
+        }
     }
 
     private ModelWriterFactory() {
     }
+
+    public enum Engine {
+
+        /**
+         * Simple XML format built as DOM, it is read by SIMPLE_XML and
+         * STREAMING_XML readers.
+         */
+        SIMPLE_XML,
+        /**
+         * The same format as SIMPLE_XML written without building DOM.
+         */
+        STREAMING_XML,
+        /**
+         * STREAMING_XML indented by four spaces, to be read by humans.
+         */
+        INDENTED_XML,
+        /**
+         * Compact binary format with a string table, it is read by the BINARY
+         * reader. Variants encoded by a codec can be read only with a variants
+         * factory which is a codec for them as well.
+         */
+        BINARY
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.models.cim.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variants factory which knows the state of its variants and encodes it in
+ * the binary format instead of the text of variants. Variants it can't encode
+ * are written as their text and built by {@link #buildVariant}.
+ *
+ * @author JET
+ */
+public interface VariantsCodec extends VariantsFactory {
+
+    /**
+     * Writes the state of the variant.
+     *
+     * @return false if the variant has no binary encoding, anything written
+     * is discarded then
+     */
+    boolean writeVariant(Object variant, DataOutput out) throws IOException;
+
+    /**
+     * Builds a variant of the type from the state written by
+     * {@link #writeVariant}.
+     *
+     * @throws ModelPersistenceException if the type has no binary encoding or
+     * the state is malformed
+     */
+    <T> T readVariant(String type, DataInput in) throws IOException, ModelPersistenceException;
+
+}
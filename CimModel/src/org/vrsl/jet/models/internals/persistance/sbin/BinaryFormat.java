@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.models.internals.persistance.sbin;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Layout of the simple binary format.
+ * <pre>
+ * file      := MAGIC VERSION strings schema
+ * strings   := count (length utf-8)*          string table, indexes start at 1
+ * schema    := name qualifiers count element*
+ * element   := TAG_CLASS class | TAG_ASSOCIATION class count reference*
+ * class     := name qualifiers count (name qualifiers)* count (name qualifiers)*
+ * reference := className qualifiers
+ * qualifiers:= count (type details)*
+ * details   := text | DETAILS_CODED state
+ * </pre>
+ * Numbers are unsigned variable length integers, strings are indexes in the
+ * string table, 0 stands for null. Details are never null, so index 0 of
+ * details stands for the state of the variant written by a
+ * {@link org.vrsl.jet.models.cim.persistence.VariantsCodec}; in version 1
+ * details are always a text.
+ *
+ * @author JET
+ */
+final class BinaryFormat {
+
+    static final int MAGIC = 0x43494D42;
+    static final int VERSION = 2;
+    static final int VERSION_TEXT_DETAILS = 1;
+    static final int TAG_CLASS = 1;
+    static final int TAG_ASSOCIATION = 2;
+    static final int DETAILS_CODED = 0;
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static void writeNumber(DataOutput out, int value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative number " + value + " can't be written.");
+        }
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads a number written by {@link #writeNumber}, it is never negative.
+     */
+    static int readNumber(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            // -- The last byte holds the remaining 3 bits, the sign bit is never set -----
+            if (shift == 28 && (b & ~0x07) != 0) {
+                break;
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number.");
+    }
+
+    private BinaryFormat() {
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.models.internals.persistance.sbin;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.vrsl.jet.models.cim.Association;
+import org.vrsl.jet.models.cim.Class;
+import org.vrsl.jet.models.cim.Method;
+import org.vrsl.jet.models.cim.NamedElement;
+import org.vrsl.jet.models.cim.Property;
+import org.vrsl.jet.models.cim.Qualifier;
+import org.vrsl.jet.models.cim.Reference;
+import org.vrsl.jet.models.cim.Schema;
+import org.vrsl.jet.models.cim.persistence.ModelPersistenceException;
+import org.vrsl.jet.models.cim.persistence.ModelReader;
+import org.vrsl.jet.models.cim.persistence.VariantsCodec;
+import org.vrsl.jet.models.cim.persistence.VariantsFactory;
+
+/**
+ * Reads schemas written by {@link BinarySimpleWriter}. It builds exactly the
+ * same schema as the XML readers: classes are added while they are read,
+ * associations are added when all classes are known. Encoded variants are
+ * read by the variants factory if it is a {@link VariantsCodec}.
+ *
+ * @author JET
+ */
+public class BinarySimpleReader implements ModelReader {
+
+    private static final int TEXT_CHUNK = 8192;
+
+    private final VariantsFactory vf;
+    private final VariantsCodec codec;
+
+    public BinarySimpleReader(VariantsFactory vf) {
+        this.vf = vf;
+        this.codec = vf instanceof VariantsCodec ? (VariantsCodec) vf : null;
+    }
+
+    @Override
+    public Schema read(InputStream sysIn) throws ModelPersistenceException {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(sysIn));
+            // -- Checking the header ----------------------------------------------------------
+            if (in.readInt() != BinaryFormat.MAGIC) {
+                throw new ModelPersistenceException("Stream doesn't contain a binary model.");
+            }
+            int version = BinaryFormat.readNumber(in);
+            if (version != BinaryFormat.VERSION && version != BinaryFormat.VERSION_TEXT_DETAILS) {
+                throw new ModelPersistenceException("Binary model version " + version + " has not been supported.");
+            }
+            // -- Encoded details are written since the second version -------------------------
+            boolean typed = version != BinaryFormat.VERSION_TEXT_DETAILS;
+            // -- Reading the string table, index 0 stands for null ----------------------------
+            // -- Counts and lengths are not trusted, everything grows as it is read -----------
+            int stringsCount = BinaryFormat.readNumber(in);
+            List<String> strings = new ArrayList<>();
+            strings.add(null);
+            for (int i = 0; i < stringsCount; i++) {
+                strings.add(readText(in, BinaryFormat.readNumber(in)));
+            }
+            // -- Reading Schema information ---------------------------------------------------
+            Schema schema = new Schema();
+            schema.setName(readString(in, strings));
+            for (Qualifier<?> q : readQualifiers(in, strings, typed)) {
+                schema.add(q);
+            }
+            List<AssociationDraft> drafts = new ArrayList<>();
+            int count = BinaryFormat.readNumber(in);
+            for (int i = 0; i < count; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case BinaryFormat.TAG_CLASS:
+                        schema.add(readClass(in, strings, typed));
+                        break;
+                    case BinaryFormat.TAG_ASSOCIATION:
+                        AssociationDraft d = new AssociationDraft(readClass(in, strings, typed));
+                        int references = BinaryFormat.readNumber(in);
+                        for (int j = 0; j < references; j++) {
+                            String className = readString(in, strings);
+                            d.references.add(new ReferenceDraft(className, readQualifiers(in, strings, typed)));
+                        }
+                        drafts.add(d);
+                        break;
+                    default:
+                        throw new ModelPersistenceException("Unknown element tag " + tag + ".");
+                }
+            }
+            // -- Associations go after all classes as they are refering them ------------------
+            for (AssociationDraft d : drafts) {
+                schema.add(d.build(schema));
+            }
+            // -- Returning the result ---------------------------------------------------------
+            return schema;
+        } catch (IOException ex) {
+            throw new ModelPersistenceException(ex);
+        }
+    }
+
+    private Class readClass(DataInputStream in, List<String> strings, boolean typed) throws IOException, ModelPersistenceException {
+        Class c = new Class();
+        c.setName(readString(in, strings));
+        for (Qualifier<?> q : readQualifiers(in, strings, typed)) {
+            c.add(q);
+        }
+        int properties = BinaryFormat.readNumber(in);
+        for (int i = 0; i < properties; i++) {
+            Property p = new Property();
+            p.setName(readString(in, strings));
+            for (Qualifier<?> q : readQualifiers(in, strings, typed)) {
+                p.add(q);
+            }
+            c.add(p);
+        }
+        int methods = BinaryFormat.readNumber(in);
+        for (int i = 0; i < methods; i++) {
+            Method m = new Method();
+            m.setName(readString(in, strings));
+            for (Qualifier<?> q : readQualifiers(in, strings, typed)) {
+                m.add(q);
+            }
+            c.add(m);
+        }
+        return c;
+    }
+
+    private List<Qualifier<?>> readQualifiers(DataInputStream in, List<String> strings, boolean typed) throws IOException, ModelPersistenceException {
+        int count = BinaryFormat.readNumber(in);
+        List<Qualifier<?>> res = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String t = readString(in, strings);
+            int index = BinaryFormat.readNumber(in);
+            if (typed && index == BinaryFormat.DETAILS_CODED) {
+                if (codec == null) {
+                    throw new ModelPersistenceException("Variant " + t + " is encoded, its variants factory can't decode it.");
+                }
+                res.add(new Qualifier<>(codec.readVariant(t, in)));
+                continue;
+            }
+            String details = string(index, strings);
+            try {
+                res.add(new Qualifier<>(vf.buildVariant(t, details)));
+            } catch (RuntimeException ex) {
+                throw new ModelPersistenceException("Variant " + t + " can't be built from " + details + ".", ex);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Missing names are read as empty strings the same way as missing XML
+     * attributes.
+     */
+    private static String readString(DataInputStream in, List<String> strings) throws IOException, ModelPersistenceException {
+        return string(BinaryFormat.readNumber(in), strings);
+    }
+
+    private static String string(int index, List<String> strings) throws ModelPersistenceException {
+        if (index < 0 || index >= strings.size()) {
+            throw new ModelPersistenceException("String " + index + " is out of the string table.");
+        }
+        return index == 0 ? "" : strings.get(index);
+    }
+
+    /**
+     * Reads UTF-8 bytes in chunks, so a corrupt length ends with the stream
+     * instead of allocating the memory it claims.
+     */
+    private static String readText(DataInputStream in, int length) throws IOException {
+        byte[] chunk = new byte[Math.min(length, TEXT_CHUNK)];
+        if (length == chunk.length) {
+            in.readFully(chunk);
+            return new String(chunk, BinaryFormat.UTF8);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(TEXT_CHUNK);
+        int left = length;
+        while (left > 0) {
+            int n = Math.min(left, chunk.length);
+            in.readFully(chunk, 0, n);
+            bytes.write(chunk, 0, n);
+            left -= n;
+        }
+        return new String(bytes.toByteArray(), BinaryFormat.UTF8);
+    }
+
+    private static class ReferenceDraft {
+
+        private final String className;
+        private final List<Qualifier<?>> qualifiers;
+
+        ReferenceDraft(String className, List<Qualifier<?>> qualifiers) {
+            this.className = className;
+            this.qualifiers = qualifiers;
+        }
+
+        Reference build(Schema schema) {
+            // -- Looking for refered class first ----------------------------------------------
+            List<NamedElement> candidates = schema.getElements(className);
+            if (candidates.isEmpty() || candidates.size() > 1) {
+                throw new IllegalStateException(
+                        "More then one class with name "
+                        + className
+                        + " has been found in "
+                        + schema.getName()
+                        + " schema.");
+            }
+            if (!(candidates.get(0) instanceof Class)) {
+                throw new IllegalStateException(
+                        "Schema element "
+                        + className
+                        + " is not a class instance.");
+            }
+            // -- Building resulting reference -------------------------------------------------
+            Reference r = new Reference((Class) candidates.get(0));
+            for (Qualifier<?> q : qualifiers) {
+                r.add(q);
+            }
+            return r;
+        }
+    }
+
+    private static class AssociationDraft {
+
+        private final Class parentClass;
+        private final List<ReferenceDraft> references = new ArrayList<>();
+
+        AssociationDraft(Class parentClass) {
+            this.parentClass = parentClass;
+        }
+
+        Association build(Schema schema) throws ModelPersistenceException {
+            if (references.size() < 2) {
+                throw new ModelPersistenceException("Association has to define at least two references.");
+            }
+            List<Reference> refs = new ArrayList<>();
+            for (ReferenceDraft r : references) {
+                refs.add(r.build(schema));
+            }
+            // -- Building resulting association -----------------------------------------------
+            Association a = new Association(parentClass, refs.get(0), refs.get(1));
+            // -- Adding extra references if we have any ---------------------------------------
+            for (int i = 2; i < refs.size(); i++) {
+                a.add(refs.get(i));
+            }
+            return a;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.models.internals.persistance.sbin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.vrsl.jet.models.cim.Association;
+import org.vrsl.jet.models.cim.Class;
+import org.vrsl.jet.models.cim.Method;
+import org.vrsl.jet.models.cim.NamedElement;
+import org.vrsl.jet.models.cim.Property;
+import org.vrsl.jet.models.cim.Qualifier;
+import org.vrsl.jet.models.cim.Reference;
+import org.vrsl.jet.models.cim.Schema;
+import org.vrsl.jet.models.cim.persistence.ModelPersistenceException;
+import org.vrsl.jet.models.cim.persistence.ModelWriter;
+import org.vrsl.jet.models.cim.persistence.VariantsCodec;
+
+/**
+ * Writes the same information as the simple XML format in the compact binary
+ * layout described in {@link BinaryFormat}. Names, type tags and qualifier
+ * details are stored once in the string table, the state of variants known to
+ * the codec is written instead of their details.
+ *
+ * @author JET
+ */
+public class BinarySimpleWriter implements ModelWriter {
+
+    private final VariantsCodec codec;
+
+    public BinarySimpleWriter() {
+        this(null);
+    }
+
+    /**
+     * @param codec encodes variants, null if all of them are written as text
+     */
+    public BinarySimpleWriter(VariantsCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public void write(OutputStream sysOut, Schema schema) throws ModelPersistenceException {
+        try {
+            // -- Body goes first, it fills the string table -----------------------------------
+            StringTable strings = new StringTable();
+            VariantBuffer variants = new VariantBuffer();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            strings.write(out, schema.getName());
+            writeQualifiers(out, strings, variants, schema);
+            List<Class> classes = new ArrayList<>();
+            for (NamedElement e : schema.getElements()) {
+                if (e instanceof Class) {
+                    classes.add((Class) e);
+                }
+            }
+            BinaryFormat.writeNumber(out, classes.size());
+            for (Class c : classes) {
+                if (c instanceof Association) {
+                    Association a = (Association) c;
+                    out.writeByte(BinaryFormat.TAG_ASSOCIATION);
+                    writeClass(out, strings, variants, a);
+                    List<Reference> references = a.getReferences();
+                    BinaryFormat.writeNumber(out, references.size());
+                    for (Reference r : references) {
+                        strings.write(out, r.getReferedClass().getName());
+                        writeQualifiers(out, strings, variants, r);
+                    }
+                } else {
+                    out.writeByte(BinaryFormat.TAG_CLASS);
+                    writeClass(out, strings, variants, c);
+                }
+            }
+            out.flush();
+            // -- Header, string table and the body --------------------------------------------
+            DataOutputStream res = new DataOutputStream(sysOut);
+            res.writeInt(BinaryFormat.MAGIC);
+            BinaryFormat.writeNumber(res, BinaryFormat.VERSION);
+            BinaryFormat.writeNumber(res, strings.values.size());
+            for (String s : strings.values) {
+                byte[] bytes = s.getBytes(BinaryFormat.UTF8);
+                BinaryFormat.writeNumber(res, bytes.length);
+                res.write(bytes);
+            }
+            body.writeTo(res);
+            res.flush();
+        } catch (IOException ex) {
+            throw new ModelPersistenceException(ex);
+        }
+    }
+
+    private void writeClass(DataOutputStream out, StringTable strings, VariantBuffer variants, Class c) throws IOException {
+        strings.write(out, c.getName());
+        writeQualifiers(out, strings, variants, c);
+        List<Property> properties = c.getProperties();
+        BinaryFormat.writeNumber(out, properties.size());
+        for (Property p : properties) {
+            strings.write(out, p.getName());
+            writeQualifiers(out, strings, variants, p);
+        }
+        List<Method> methods = c.getMethdos();
+        BinaryFormat.writeNumber(out, methods.size());
+        for (Method m : methods) {
+            strings.write(out, m.getName());
+            writeQualifiers(out, strings, variants, m);
+        }
+    }
+
+    private void writeQualifiers(DataOutputStream out, StringTable strings, VariantBuffer variants, NamedElement e) throws IOException {
+        List<Qualifier<?>> qualifiers = e.getQualifiers();
+        BinaryFormat.writeNumber(out, qualifiers.size());
+        for (Qualifier<?> q : qualifiers) {
+            Object v = q.getValue();
+            strings.write(out, v.getClass().getSimpleName());
+            // -- The codec may give up on a variant after writing a part of it -------------
+            variants.reset();
+            if (codec != null && codec.writeVariant(v, variants.out)) {
+                BinaryFormat.writeNumber(out, BinaryFormat.DETAILS_CODED);
+                variants.out.flush();
+                variants.writeTo(out);
+            } else {
+                String details = v.toString();
+                strings.write(out, details == null ? "" : details);
+            }
+        }
+    }
+
+    private static class VariantBuffer extends ByteArrayOutputStream {
+
+        private final DataOutputStream out = new DataOutputStream(this);
+    }
+
+    private static class StringTable {
+
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        void write(DataOutputStream out, String s) throws IOException {
+            if (s == null) {
+                BinaryFormat.writeNumber(out, 0);
+                return;
+            }
+            Integer index = indexes.get(s);
+            if (index == null) {
+                values.add(s);
+                index = values.size();
+                indexes.put(s, index);
+            }
+            BinaryFormat.writeNumber(out, index);
+        }
+    }
+}
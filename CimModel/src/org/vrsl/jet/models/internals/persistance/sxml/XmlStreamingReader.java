@@ -0,0 +1,342 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.models.internals.persistance.sxml;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.vrsl.jet.models.cim.Association;
+import org.vrsl.jet.models.cim.Class;
+import org.vrsl.jet.models.cim.Method;
+import org.vrsl.jet.models.cim.NamedElement;
+import org.vrsl.jet.models.cim.Property;
+import org.vrsl.jet.models.cim.Qualifier;
+import org.vrsl.jet.models.cim.Reference;
+import org.vrsl.jet.models.cim.Schema;
+import org.vrsl.jet.models.cim.persistence.ModelPersistenceException;
+import org.vrsl.jet.models.cim.persistence.ModelReader;
+import org.vrsl.jet.models.cim.persistence.VariantsFactory;
+
+/**
+ * Single pass pull-parser reader for the simple XML format. It builds exactly
+ * the same schema as {@link XmlSimpleReader} without DOM and XPath: classes are
+ * added while they are parsed, associations are kept aside and resolved when
+ * the whole document has been read.
+ *
+ * @author JET
+ */
+public class XmlStreamingReader implements ModelReader {
+
+    private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+    static {
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        if (inputFactory.isPropertySupported(XMLInputFactory.IS_NAMESPACE_AWARE)) {
+            inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        }
+    }
+
+    private final VariantsFactory vf;
+
+    public XmlStreamingReader(VariantsFactory vf) {
+        this.vf = vf;
+    }
+
+    @Override
+    public Schema read(InputStream sysIn) throws ModelPersistenceException {
+        XMLStreamReader in = null;
+        try {
+            synchronized (inputFactory) {
+                in = inputFactory.createXMLStreamReader(sysIn);
+            }
+            Schema schema = new Schema();
+            List<AssociationDraft> drafts = new ArrayList<>();
+            boolean schemaFound = false;
+            // -- Looking for the root element first -------------------------------------------
+            while (in.hasNext() && in.next() != XMLStreamConstants.START_ELEMENT) {
+            }
+            if (!in.isStartElement() || !"Model".equals(in.getLocalName())) {
+                throw new ModelPersistenceException("Model element has not been found.");
+            }
+            // -- Reading Schema information ---------------------------------------------------
+            while (nextChildElement(in)) {
+                if ("Schema".equals(in.getLocalName())) {
+                    if (!schemaFound) {
+                        schema.setName(attribute(in, "Name"));
+                        schemaFound = true;
+                    }
+                    readSchema(in, schema, drafts);
+                } else {
+                    skipElement(in);
+                }
+            }
+            if (!schemaFound) {
+                throw new ModelPersistenceException("Schema element has not been found.");
+            }
+            // -- Associations go after all classes as they are refering them ------------------
+            for (AssociationDraft d : drafts) {
+                schema.add(d.build(schema));
+            }
+            // -- Returning the result ---------------------------------------------------------
+            return schema;
+        } catch (XMLStreamException ex) {
+            throw new ModelPersistenceException(ex);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (XMLStreamException ex) {
+                    // -- Nothing to do here, the stream is owned by the caller ----------------
+                }
+            }
+        }
+    }
+
+    private void readSchema(XMLStreamReader in, Schema schema, List<AssociationDraft> drafts) throws XMLStreamException, ModelPersistenceException {
+        while (nextChildElement(in)) {
+            switch (in.getLocalName()) {
+                case "Qualifier":
+                    schema.add(readQualifier(in));
+                    break;
+                case "Class":
+                    schema.add(readClass(in));
+                    break;
+                case "Association":
+                    drafts.add(readAssociation(in));
+                    break;
+                default:
+                    skipElement(in);
+            }
+        }
+    }
+
+    private Class readClass(XMLStreamReader in) throws XMLStreamException {
+        // -- Building resulting class -----------------------------------------------------
+        Class c = new Class();
+        c.setName(attribute(in, "Name"));
+        // -- Qualifiers, properties and methods are kept in the order of their kinds ------
+        List<Qualifier<?>> qualifiers = new ArrayList<>();
+        List<Property> properties = new ArrayList<>();
+        List<Method> methods = new ArrayList<>();
+        while (nextChildElement(in)) {
+            switch (in.getLocalName()) {
+                case "Qualifier":
+                    qualifiers.add(readQualifier(in));
+                    break;
+                case "Property":
+                    Property p = new Property();
+                    p.setName(attribute(in, "Name"));
+                    readQualifiers(in, p);
+                    properties.add(p);
+                    break;
+                case "Method":
+                    Method m = new Method();
+                    m.setName(attribute(in, "Name"));
+                    readQualifiers(in, m);
+                    methods.add(m);
+                    break;
+                default:
+                    skipElement(in);
+            }
+        }
+        for (Qualifier<?> q : qualifiers) {
+            c.add(q);
+        }
+        for (Property p : properties) {
+            c.add(p);
+        }
+        for (Method m : methods) {
+            c.add(m);
+        }
+        // -- Returing the result ----------------------------------------------------------
+        return c;
+    }
+
+    private AssociationDraft readAssociation(XMLStreamReader in) throws XMLStreamException {
+        AssociationDraft d = new AssociationDraft();
+        while (nextChildElement(in)) {
+            switch (in.getLocalName()) {
+                case "Class":
+                    if (d.parentClass == null) {
+                        d.parentClass = readClass(in);
+                    } else {
+                        skipElement(in);
+                    }
+                    break;
+                case "Reference":
+                    ReferenceDraft r = new ReferenceDraft(attribute(in, "ClassName"));
+                    while (nextChildElement(in)) {
+                        if ("Qualifier".equals(in.getLocalName())) {
+                            r.qualifiers.add(readQualifier(in));
+                        } else {
+                            skipElement(in);
+                        }
+                    }
+                    d.references.add(r);
+                    break;
+                default:
+                    skipElement(in);
+            }
+        }
+        return d;
+    }
+
+    private void readQualifiers(XMLStreamReader in, NamedElement e) throws XMLStreamException {
+        while (nextChildElement(in)) {
+            if ("Qualifier".equals(in.getLocalName())) {
+                e.add(readQualifier(in));
+            } else {
+                skipElement(in);
+            }
+        }
+    }
+
+    private Qualifier<?> readQualifier(XMLStreamReader in) throws XMLStreamException {
+        String t = attribute(in, "Type");
+        String c = readTextContent(in);
+        return new Qualifier<>(vf.buildVariant(t, c));
+    }
+
+    /**
+     * Moves the reader to the next child element of the current one. Returns
+     * false when the end tag of the current element has been reached.
+     */
+    private static boolean nextChildElement(XMLStreamReader in) throws XMLStreamException {
+        while (in.hasNext()) {
+            int event = in.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static void skipElement(XMLStreamReader in) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && in.hasNext()) {
+            int event = in.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Collects all the text of the current element including its descendants
+     * the same way as DOM's getTextContent does.
+     */
+    private static String readTextContent(XMLStreamReader in) throws XMLStreamException {
+        StringBuilder sb = new StringBuilder();
+        int depth = 1;
+        while (depth > 0 && in.hasNext()) {
+            switch (in.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    sb.append(in.getTextCharacters(), in.getTextStart(), in.getTextLength());
+                    break;
+                default:
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String attribute(XMLStreamReader in, String name) {
+        String value = in.getAttributeValue(null, name);
+        return value == null ? "" : value;
+    }
+
+    private static class ReferenceDraft {
+
+        private final String className;
+        private final List<Qualifier<?>> qualifiers = new ArrayList<>();
+
+        ReferenceDraft(String className) {
+            this.className = className;
+        }
+
+        Reference build(Schema schema) {
+            // -- Looking for refered class first ----------------------------------------------
+            List<NamedElement> candidates = schema.getElements(className);
+            if (candidates.isEmpty() || candidates.size() > 1) {
+                throw new IllegalStateException(
+                        "More then one class with name "
+                        + className
+                        + " has been found in "
+                        + schema.getName()
+                        + " schema.");
+            }
+            if (!(candidates.get(0) instanceof Class)) {
+                throw new IllegalStateException(
+                        "Schema element "
+                        + className
+                        + " is not a class instance.");
+            }
+            // -- Building resulting reference -------------------------------------------------
+            Reference r = new Reference((Class) candidates.get(0));
+            for (Qualifier<?> q : qualifiers) {
+                r.add(q);
+            }
+            return r;
+        }
+    }
+
+    private static class AssociationDraft {
+
+        private Class parentClass;
+        private final List<ReferenceDraft> references = new ArrayList<>();
+
+        Association build(Schema schema) throws ModelPersistenceException {
+            if (parentClass == null || references.size() < 2) {
+                throw new ModelPersistenceException("Association has to define a class and at least two references.");
+            }
+            List<Reference> refs = new ArrayList<>();
+            for (ReferenceDraft r : references) {
+                refs.add(r.build(schema));
+            }
+            // -- Building resulting association -----------------------------------------------
+            Association a = new Association(parentClass, refs.get(0), refs.get(1));
+            // -- Adding extra references if we have any ---------------------------------------
+            for (int i = 2; i < refs.size(); i++) {
+                a.add(refs.get(i));
+            }
+            return a;
+        }
+    }
+}
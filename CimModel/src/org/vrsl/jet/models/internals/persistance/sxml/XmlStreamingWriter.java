@@ -0,0 +1,251 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.models.internals.persistance.sxml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.vrsl.jet.models.cim.Association;
+import org.vrsl.jet.models.cim.Class;
+import org.vrsl.jet.models.cim.Method;
+import org.vrsl.jet.models.cim.NamedElement;
+import org.vrsl.jet.models.cim.Property;
+import org.vrsl.jet.models.cim.Qualifier;
+import org.vrsl.jet.models.cim.Reference;
+import org.vrsl.jet.models.cim.Schema;
+import org.vrsl.jet.models.cim.Trigger;
+import org.vrsl.jet.models.cim.persistence.ModelPersistenceException;
+import org.vrsl.jet.models.cim.persistence.ModelWriter;
+
+/**
+ * Writes the simple XML format while walking the schema, without building a
+ * DOM first. The structure is the same as the one of {@link XmlSimpleWriter},
+ * attributes are written in the same order. Optionally the output is indented
+ * by four spaces, elements holding text only are kept on a single line.
+ *
+ * @author JET
+ */
+public class XmlStreamingWriter implements ModelWriter {
+
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private static final String INDENT = "    ";
+
+    private final boolean indent;
+
+    public XmlStreamingWriter() {
+        this(false);
+    }
+
+    public XmlStreamingWriter(boolean indent) {
+        this.indent = indent;
+    }
+
+    @Override
+    public void write(OutputStream sysOut, Schema schema) throws ModelPersistenceException {
+        XMLStreamWriter out = null;
+        try {
+            synchronized (outputFactory) {
+                out = outputFactory.createXMLStreamWriter(sysOut, "UTF-8");
+            }
+            out.writeStartDocument("UTF-8", "1.0");
+            startElement(out, "Model", 0, false);
+            writeSchema(out, schema, 1);
+            endElement(out, 0);
+            out.writeEndDocument();
+            out.flush();
+            if (indent) {
+                sysOut.write('\n');
+            }
+        } catch (XMLStreamException | IOException ex) {
+            throw new ModelPersistenceException(ex);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (XMLStreamException ex) {
+                    // -- Nothing to do here, the stream is owned by the caller ----------------
+                }
+            }
+        }
+    }
+
+    private void writeSchema(XMLStreamWriter out, Schema s, int level) throws XMLStreamException {
+        List<NamedElement> elements = s.getElements();
+        boolean empty = isEmpty(s) && elements.isEmpty();
+        startElement(out, "Schema", level, empty);
+        writeNameAttributes(out, s);
+        writeNamedContent(out, s, level + 1);
+        for (NamedElement e : elements) {
+            writeElement(out, e, level + 1);
+        }
+        if (!empty) {
+            endElement(out, level);
+        }
+    }
+
+    private void writeElement(XMLStreamWriter out, NamedElement e, int level) throws XMLStreamException {
+        if (e instanceof Association) {
+            Association a = (Association) e;
+            startElement(out, "Association", level, false);
+            writeClass(out, a, level + 1);
+            for (Reference r : a.getReferences()) {
+                writeElement(out, r, level + 1);
+            }
+            endElement(out, level);
+        } else if (e instanceof Class) {
+            writeClass(out, (Class) e, level);
+        } else if (e instanceof Method) {
+            writeNamedElement(out, "Method", e, level);
+        } else if (e instanceof Reference) {
+            boolean empty = isEmpty(e);
+            startElement(out, "Reference", level, empty);
+            out.writeAttribute("ClassName", ((Reference) e).getReferedClass().getName());
+            writeNameAttributes(out, e);
+            writeNamedContent(out, e, level + 1);
+            if (!empty) {
+                endElement(out, level);
+            }
+        } else if (e instanceof Property) {
+            writeNamedElement(out, "Property", e, level);
+        } else if (e instanceof Qualifier) {
+            writeQualifier(out, (Qualifier<?>) e, level);
+        } else if (e instanceof Schema) {
+            writeSchema(out, (Schema) e, level);
+        } else if (e instanceof Trigger) {
+            writeNamedElement(out, "Trigger", e, level);
+        } else {
+            throw new IllegalArgumentException("NamedElement has " + e.getClass().getName() + " type which can't be written.");
+        }
+    }
+
+    private void writeClass(XMLStreamWriter out, Class c, int level) throws XMLStreamException {
+        List<Property> properties = c.getProperties();
+        List<Method> methods = c.getMethdos();
+        boolean empty = isEmpty(c) && properties.isEmpty() && methods.isEmpty();
+        startElement(out, "Class", level, empty);
+        writeNameAttributes(out, c);
+        writeNamedContent(out, c, level + 1);
+        for (Property p : properties) {
+            writeElement(out, p, level + 1);
+        }
+        for (Method m : methods) {
+            writeElement(out, m, level + 1);
+        }
+        if (!empty) {
+            endElement(out, level);
+        }
+    }
+
+    private void writeNamedElement(XMLStreamWriter out, String tag, NamedElement e, int level) throws XMLStreamException {
+        boolean empty = isEmpty(e);
+        startElement(out, tag, level, empty);
+        writeNameAttributes(out, e);
+        writeNamedContent(out, e, level + 1);
+        if (!empty) {
+            endElement(out, level);
+        }
+    }
+
+    /**
+     * Qualifiers hold their text only, the same way as in the DOM writer.
+     */
+    private void writeQualifier(XMLStreamWriter out, Qualifier<?> q, int level) throws XMLStreamException {
+        String text = q.getValue().toString();
+        startElement(out, "Qualifier", level, text.isEmpty());
+        writeNameAttributes(out, q);
+        out.writeAttribute("Type", q.getValue().getClass().getSimpleName());
+        if (!text.isEmpty()) {
+            writeText(out, text);
+            out.writeEndElement();
+        }
+    }
+
+    /**
+     * Qualifiers and triggers common for all elements.
+     */
+    private void writeNamedContent(XMLStreamWriter out, NamedElement e, int level) throws XMLStreamException {
+        for (Qualifier<?> q : e.getQualifiers()) {
+            writeQualifier(out, q, level);
+        }
+        for (Trigger t : e.getTriggers()) {
+            writeElement(out, t, level);
+        }
+    }
+
+    private static void writeNameAttributes(XMLStreamWriter out, NamedElement e) throws XMLStreamException {
+        if (e.getName() != null) {
+            out.writeAttribute("Name", e.getName());
+        }
+        if (e.getSchema() != null) {
+            out.writeAttribute("SchemaName", e.getSchema().getName());
+        }
+    }
+
+    /**
+     * Carriage returns would be lost as line ends are normalized by parsers,
+     * they are written as character references.
+     */
+    private static void writeText(XMLStreamWriter out, String text) throws XMLStreamException {
+        int start = 0;
+        for (int i = text.indexOf('\r'); i >= 0; i = text.indexOf('\r', start)) {
+            out.writeCharacters(text.substring(start, i));
+            out.writeEntityRef("#13");
+            start = i + 1;
+        }
+        out.writeCharacters(text.substring(start));
+    }
+
+    private static boolean isEmpty(NamedElement e) {
+        return e.getQualifiers().isEmpty() && e.getTriggers().isEmpty();
+    }
+
+    private void startElement(XMLStreamWriter out, String tag, int level, boolean empty) throws XMLStreamException {
+        newLine(out, level);
+        if (empty) {
+            out.writeEmptyElement(tag);
+        } else {
+            out.writeStartElement(tag);
+        }
+    }
+
+    private void endElement(XMLStreamWriter out, int level) throws XMLStreamException {
+        newLine(out, level);
+        out.writeEndElement();
+    }
+
+    private void newLine(XMLStreamWriter out, int level) throws XMLStreamException {
+        if (!indent) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder(1 + level * INDENT.length());
+        sb.append('\n');
+        for (int i = 0; i < level; i++) {
+            sb.append(INDENT);
+        }
+        out.writeCharacters(sb.toString());
+    }
+}
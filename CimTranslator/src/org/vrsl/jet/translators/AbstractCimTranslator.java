@@ -35,6 +35,18 @@ import org.vrsl.jet.models.cim.Schema;
 import org.vrsl.jet.translators.properties.TranslatorPropertyMetadata;
 
 public abstract class AbstractCimTranslator {
+
+    /**
+     * Finds associations of the class using the index built by the
+     * translation, the schema of the class is scanned if there is no index or
+     * it has been built for another schema.
+     */
+    protected static Collection<Association> findAssociations(AssociationIndex associations, Class c) {
+        if (associations == null || associations.getSchema() != c.getSchema()) {
+            return findAssociations(c.getSchema(), c);
+        }
+        return associations.getAssociations(c);
+    }
     
     protected static Collection<Association> findAssociations(Schema s, Class c) {
         LinkedList<Association> res = new LinkedList<>();
@@ -0,0 +1,75 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.translators;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import org.vrsl.jet.models.cim.Association;
+import org.vrsl.jet.models.cim.Class;
+import org.vrsl.jet.models.cim.Reference;
+import org.vrsl.jet.models.cim.Schema;
+
+/**
+ * Class to associations adjacency of a schema. Classes are matched by name and
+ * associations of every class are kept in the schema order, exactly as
+ * {@link AbstractCimTranslator#findAssociations(Schema, Class)} finds them.
+ * The index is not updated, so the schema must not be changed while the
+ * index is in use.
+ */
+public final class AssociationIndex {
+
+    private final Schema schema;
+    private final Map<String, Collection<Association>> associations = new HashMap<>();
+
+    public static AssociationIndex build(Schema s) {
+        return new AssociationIndex(s);
+    }
+
+    private AssociationIndex(Schema s) {
+        schema = s;
+        for (Association a : s.<Association>getElements(Association.class)) {
+            for (Reference r : a.getReferences()) {
+                String name = r.getReferedClass().getName();
+                Collection<Association> bucket = associations.get(name);
+                if (bucket == null) {
+                    bucket = new LinkedHashSet<>();
+                    associations.put(name, bucket);
+                }
+                bucket.add(a);
+            }
+        }
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public Collection<Association> getAssociations(Class c) {
+        Collection<Association> res = associations.get(c.getName());
+        return res == null ? Collections.<Association>emptyList() : Collections.unmodifiableCollection(res);
+    }
+}
@@ -23,11 +23,16 @@
  */
 package org.vrsl.jet.models.erd.variants;
 
+import java.awt.Point;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import org.vrsl.jet.models.cim.persistence.VariantsFactory;
+import org.vrsl.jet.models.cim.persistence.ModelPersistenceException;
+import org.vrsl.jet.models.cim.persistence.VariantsCodec;
 import org.vrsl.jet.models.erd.ErdModelVariant;
 import org.vrsl.jet.models.erd.variants.associations.ErdModelCommentAssociation;
 import org.vrsl.jet.models.erd.variants.associations.ErdModelEntityAssociation;
@@ -49,55 +54,430 @@ import org.vrsl.jet.models.erd.variants.entities.ErdModelTextualComment;
 import org.vrsl.jet.models.erd.variants.transformations.SchemaTransformerPreferences;
 import org.vrsl.jet.models.erd.variants.types.ErdModelType;
 
-public class ErdVariantsFactory implements VariantsFactory {
+/**
+ * Builds variants by their type tags. Variants without a state are shared by
+ * all qualifiers, immutable variants with frequently repeated values are shared
+ * by qualifiers with the same text within a factory instance. An instance is
+ * meant to be used by a single reader.
+ * <p>
+ * Variants made of numbers are encoded in the binary format by their state,
+ * the ones made of names and texts are left to the string table of the format.
+ */
+public class ErdVariantsFactory implements VariantsCodec {
 
-    private static final Map<String, Class<?>> variantTagsResolver = new HashMap<>();
+    private static final Map<String, VariantBuilder> variantTagsResolver = new HashMap<>();
 
     static {
-        registerVariantClass(ErdModelCommentAssociation.class);
-        registerVariantClass(ErdModelEntityAssociation.class);
-        registerVariantClass(ErdModelReferenceMultiplicity.class);
-        registerVariantClass(ErdModelTextCommentAssociation.class);
-        registerVariantClass(ErdModelReferenceSuggestedName.class);
-
-        registerVariantClass(ErdModelDescription.class);
-        registerVariantClass(ErdModelLocation.class);
-        registerVariantClass(ErdModelMappingDetails.class);
-        registerVariantClass(ErdModelPhysicalLocation.class);
-        registerVariantClass(ErdModelPrimaryKey.class);
-        registerVariantClass(ErdModelSize.class);
-        registerVariantClass(ErdModelFont.class);
-        registerVariantClass(ErdModelColor.class);
-        registerVariantClass(ErdModelPath.class);
-
-        registerVariantClass(ErdModelEntity.class);
-        registerVariantClass(ErdModelText.class);
-        registerVariantClass(ErdModelTextualComment.class);
-
-        registerVariantClass(ErdModelType.class);
-        
-        registerVariantClass(SchemaTransformerPreferences.class);
+        registerStateless(new ErdModelCommentAssociation());
+        registerStateless(new ErdModelEntityAssociation());
+        registerShared(ErdModelReferenceMultiplicity.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelReferenceMultiplicity();
+            }
+
+            @Override
+            boolean write(ErdModelVariant v, DataOutput out) throws IOException {
+                ErdModelReferenceMultiplicity m = (ErdModelReferenceMultiplicity) v;
+                if (m.getCategory() == null) {
+                    return false;
+                }
+                out.writeByte(m.getCategory().ordinal());
+                return true;
+            }
+
+            @Override
+            long readKey(DataInput in) throws IOException, ModelPersistenceException {
+                return in.readUnsignedByte();
+            }
+
+            @Override
+            ErdModelVariant build(long key) throws ModelPersistenceException {
+                ErdModelReferenceMultiplicity.Category[] categories = ErdModelReferenceMultiplicity.Category.values();
+                if (key >= categories.length) {
+                    throw new ModelPersistenceException("Unknown multiplicity category " + key + ".");
+                }
+                return new ErdModelReferenceMultiplicity(categories[(int) key]);
+            }
+        });
+        registerStateless(new ErdModelTextCommentAssociation());
+        registerShared(ErdModelReferenceSuggestedName.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelReferenceSuggestedName();
+            }
+        });
+
+        registerVariant(ErdModelDescription.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelDescription();
+            }
+        });
+        registerVariant(ErdModelLocation.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelLocation();
+            }
+
+            @Override
+            boolean write(ErdModelVariant v, DataOutput out) throws IOException {
+                Point p = ((ErdModelLocation) v).getLoaction();
+                if (p == null) {
+                    return false;
+                }
+                writeInt(out, p.x);
+                writeInt(out, p.y);
+                return true;
+            }
+
+            @Override
+            long readKey(DataInput in) throws IOException, ModelPersistenceException {
+                return pack(readInt(in), readInt(in));
+            }
+
+            @Override
+            ErdModelVariant build(long key) {
+                return new ErdModelLocation(high(key), low(key));
+            }
+        });
+        registerShared(ErdModelMappingDetails.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelMappingDetails();
+            }
+        });
+        registerVariant(ErdModelPhysicalLocation.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelPhysicalLocation();
+            }
+        });
+        registerShared(ErdModelPrimaryKey.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelPrimaryKey();
+            }
+
+            @Override
+            boolean write(ErdModelVariant v, DataOutput out) throws IOException {
+                ErdModelPrimaryKey pk = (ErdModelPrimaryKey) v;
+                out.writeByte((pk.isPrimiryKey() ? 1 : 0) | (pk.isUseAutoSequence() ? 2 : 0));
+                return true;
+            }
+
+            @Override
+            long readKey(DataInput in) throws IOException, ModelPersistenceException {
+                return in.readUnsignedByte();
+            }
+
+            @Override
+            ErdModelVariant build(long key) throws ModelPersistenceException {
+                if ((key & ~3) != 0) {
+                    throw new ModelPersistenceException("Malformed primary key flags " + key + ".");
+                }
+                return new ErdModelPrimaryKey((key & 1) != 0, (key & 2) != 0);
+            }
+        });
+        registerShared(ErdModelSize.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelSize();
+            }
+
+            @Override
+            boolean write(ErdModelVariant v, DataOutput out) throws IOException {
+                ErdModelSize s = (ErdModelSize) v;
+                writeInt(out, s.getWidth());
+                writeInt(out, s.getHeight());
+                return true;
+            }
+
+            @Override
+            long readKey(DataInput in) throws IOException, ModelPersistenceException {
+                return pack(readInt(in), readInt(in));
+            }
+
+            @Override
+            ErdModelVariant build(long key) {
+                return new ErdModelSize(high(key), low(key));
+            }
+        });
+        registerShared(ErdModelFont.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelFont();
+            }
+        });
+        registerShared(ErdModelColor.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelColor();
+            }
+
+            @Override
+            boolean write(ErdModelVariant v, DataOutput out) throws IOException {
+                ErdModelColor c = (ErdModelColor) v;
+                if (((c.getcR() | c.getcG() | c.getcB()) & ~0xFF) != 0) {
+                    return false;
+                }
+                out.writeByte(c.getcR());
+                out.writeByte(c.getcG());
+                out.writeByte(c.getcB());
+                return true;
+            }
+
+            @Override
+            long readKey(DataInput in) throws IOException, ModelPersistenceException {
+                return in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+            }
+
+            @Override
+            ErdModelVariant build(long key) {
+                return new ErdModelColor((int) key >> 16, (int) key >> 8 & 0xFF, (int) key & 0xFF);
+            }
+        });
+        // -- Paths expose their points, every qualifier gets its own copy ---------------
+        registerVariant(ErdModelPath.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelPath();
+            }
+
+            @Override
+            boolean write(ErdModelVariant v, DataOutput out) throws IOException {
+                Collection<Point> points = ((ErdModelPath) v).get();
+                writeInt(out, points.size());
+                for (Point p : points) {
+                    writeInt(out, p.x);
+                    writeInt(out, p.y);
+                }
+                return true;
+            }
+
+            @Override
+            ErdModelVariant read(DataInput in) throws IOException, ModelPersistenceException {
+                int count = readInt(in);
+                if (count < 0) {
+                    throw new ModelPersistenceException("Malformed path of " + count + " points.");
+                }
+                Collection<Point> points = new LinkedList<>();
+                for (int i = 0; i < count; i++) {
+                    points.add(new Point(readInt(in), readInt(in)));
+                }
+                return new ErdModelPath(points);
+            }
+        });
+
+        registerStateless(new ErdModelEntity());
+        registerVariant(ErdModelText.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelText();
+            }
+        });
+        registerVariant(ErdModelTextualComment.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelTextualComment();
+            }
+        });
+
+        registerShared(ErdModelType.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new ErdModelType();
+            }
+        });
+
+        // -- Preferences are changed by the editor, they are never shared ---------------
+        registerVariant(SchemaTransformerPreferences.class, new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return new SchemaTransformerPreferences();
+            }
+        });
+    }
+
+    // -- Shared immutable variants of this factory, by type tag and text ----------------
+    private final Map<String, Map<String, ErdModelVariant>> sharedVariants = new HashMap<>();
+    // -- The same for encoded variants, by type tag and packed state --------------------
+    private final Map<String, Map<Long, ErdModelVariant>> sharedEncodedVariants = new HashMap<>();
+
+    static private void registerVariant(Class<? extends ErdModelVariant> cl, VariantBuilder builder) {
+        variantTagsResolver.put(cl.getSimpleName(), builder);
+    }
+
+    static private void registerShared(Class<? extends ErdModelVariant> cl, VariantBuilder builder) {
+        builder.shared = true;
+        registerVariant(cl, builder);
+    }
+
+    static private void registerStateless(final ErdModelVariant instance) {
+        registerVariant(instance.getClass(), new VariantBuilder() {
+
+            @Override
+            ErdModelVariant create() {
+                return instance;
+            }
+
+            @Override
+            ErdModelVariant build(String details) {
+                return instance;
+            }
+
+            @Override
+            boolean write(ErdModelVariant v, DataOutput out) {
+                return true;
+            }
+
+            @Override
+            ErdModelVariant read(DataInput in) {
+                return instance;
+            }
+        });
     }
 
-    static private void registerVariantClass(Class<?> cl) {
-        variantTagsResolver.put(cl.getSimpleName(), cl);
+    /**
+     * Writes small numbers of either sign in a few bytes: the sign goes to
+     * the lowest bit, seven bits per byte follow while the highest one is set.
+     */
+    private static void writeInt(DataOutput out, int value) throws IOException {
+        int bits = value << 1 ^ value >> 31;
+        while ((bits & ~0x7F) != 0) {
+            out.writeByte(bits & 0x7F | 0x80);
+            bits >>>= 7;
+        }
+        out.writeByte(bits);
+    }
+
+    private static int readInt(DataInput in) throws IOException, ModelPersistenceException {
+        int bits = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            bits |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return bits >>> 1 ^ -(bits & 1);
+            }
+        }
+        throw new ModelPersistenceException("Malformed number.");
+    }
+
+    private static long pack(int high, int low) {
+        return (long) high << 32 | (low & 0xFFFFFFFFL);
+    }
+
+    private static int high(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int low(long key) {
+        return (int) key;
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public <T> T buildVariant(String type, String details) {
-        Class<?> cl = variantTagsResolver.get(type);
-        if (cl != null) {
-            try {
-                T res = (T) cl.newInstance();
-                if (res instanceof ErdModelVariant) {
-                    ((ErdModelVariant) res).initFormText(details);
-                }
-                return res;
-            } catch (InstantiationException | IllegalAccessException ex) {
-                Logger.getLogger(ErdVariantsFactory.class.getName()).log(Level.SEVERE, null, ex);
-            }
+        VariantBuilder builder = variantTagsResolver.get(type);
+        if (builder == null) {
+            throw new IllegalArgumentException("Type " + type + " has not been supported yet.");
+        }
+        if (!builder.shared) {
+            return (T) builder.build(details);
+        }
+        Map<String, ErdModelVariant> variants = sharedVariants.get(type);
+        if (variants == null) {
+            variants = new HashMap<>();
+            sharedVariants.put(type, variants);
+        }
+        ErdModelVariant res = variants.get(details);
+        if (res == null) {
+            res = builder.build(details);
+            variants.put(details, res);
+        }
+        return (T) res;
+    }
+
+    @Override
+    public boolean writeVariant(Object variant, DataOutput out) throws IOException {
+        VariantBuilder builder = variantTagsResolver.get(variant.getClass().getSimpleName());
+        if (builder == null || !(variant instanceof ErdModelVariant)) {
+            return false;
+        }
+        return builder.write((ErdModelVariant) variant, out);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T readVariant(String type, DataInput in) throws IOException, ModelPersistenceException {
+        VariantBuilder builder = variantTagsResolver.get(type);
+        if (builder == null) {
+            throw new ModelPersistenceException("Type " + type + " has not been supported yet.");
+        }
+        if (!builder.shared) {
+            return (T) builder.read(in);
+        }
+        long key = builder.readKey(in);
+        Map<Long, ErdModelVariant> variants = sharedEncodedVariants.get(type);
+        if (variants == null) {
+            variants = new HashMap<>();
+            sharedEncodedVariants.put(type, variants);
+        }
+        ErdModelVariant res = variants.get(key);
+        if (res == null) {
+            res = builder.build(key);
+            variants.put(key, res);
+        }
+        return (T) res;
+    }
+
+    private abstract static class VariantBuilder {
+
+        private boolean shared = false;
+
+        abstract ErdModelVariant create();
+
+        ErdModelVariant build(String details) {
+            ErdModelVariant res = create();
+            res.initFormText(details);
+            return res;
+        }
+
+        // -- Binary encoding, variants without it are written as their text -----------
+
+        boolean write(ErdModelVariant v, DataOutput out) throws IOException {
+            return false;
+        }
+
+        /**
+         * Encoded variants are read as a state packed into a key, shared ones
+         * are looked up by it.
+         */
+        ErdModelVariant read(DataInput in) throws IOException, ModelPersistenceException {
+            return build(readKey(in));
+        }
+
+        long readKey(DataInput in) throws IOException, ModelPersistenceException {
+            throw new ModelPersistenceException("Variant " + create().getClass().getSimpleName() + " has not been encoded.");
+        }
+
+        ErdModelVariant build(long key) throws ModelPersistenceException {
+            throw new ModelPersistenceException("Variant " + create().getClass().getSimpleName() + " has not been encoded.");
         }
-        throw new IllegalArgumentException("Type " + type + " has not been supported yet.");
     }
 }
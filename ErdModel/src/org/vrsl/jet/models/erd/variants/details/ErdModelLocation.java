@@ -25,11 +25,13 @@ package org.vrsl.jet.models.erd.variants.details;
 
 import java.awt.Point;
 import java.util.Map;
+import org.vrsl.jet.models.cim.MutableVariant;
 import org.vrsl.jet.models.erd.ErdModelVariant;
 
-public class ErdModelLocation extends ErdModelVariant {
+public class ErdModelLocation extends ErdModelVariant implements MutableVariant<ErdModelLocation> {
 
     private Point location;
+    private volatile boolean frozen = false;
     
     public ErdModelLocation() {
     }
@@ -43,7 +45,8 @@ public class ErdModelLocation extends ErdModelVariant {
     }
 
     public Point getLoaction() {
-        return location;
+        // -- Location of a frozen variant is handed out as a copy ---------------------
+        return frozen ? new Point(location) : location;
     }
 
     @Override
@@ -53,9 +56,22 @@ public class ErdModelLocation extends ErdModelVariant {
 
     @Override
     public void initFormText(String text) {
+        if (frozen) {
+            throw new IllegalStateException("Location belongs to a schema snapshot and can't be changed.");
+        }
         Map<String, String> pairs = parseNameValuePairs(text);
         int x = Integer.parseInt(pairs.get("x"));
         int y = Integer.parseInt(pairs.get("y"));
         location = new Point(x, y);
     }
+
+    @Override
+    public ErdModelLocation copy() {
+        return location == null ? new ErdModelLocation() : new ErdModelLocation(new Point(location));
+    }
+
+    @Override
+    public void freeze() {
+        frozen = true;
+    }
 }
@@ -28,11 +28,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.StringTokenizer;
+import org.vrsl.jet.models.cim.MutableVariant;
 import org.vrsl.jet.models.erd.ErdModelVariant;
 
-public class ErdModelPath extends ErdModelVariant {
+public class ErdModelPath extends ErdModelVariant implements MutableVariant<ErdModelPath> {
 
     private Collection<Point> path;
+    private volatile boolean frozen = false;
 
     public ErdModelPath() {
     }
@@ -42,11 +44,21 @@ public class ErdModelPath extends ErdModelVariant {
     }
 
     public Collection<Point> get() {
+        if (path == null) {
+            return Collections.emptyList();
+        }
+        // -- Points of a frozen path are handed out as copies -------------------------
+        if (frozen) {
+            return Collections.unmodifiableCollection(copy().path);
+        }
         return Collections.unmodifiableCollection(path);
     }
 
     @Override
     public void initFormText(String text) {
+        if (frozen) {
+            throw new IllegalStateException("Path belongs to a schema snapshot and can't be changed.");
+        }
         path = new LinkedList<>();
         StringTokenizer pairsParser = new StringTokenizer(text, ",");
         while (pairsParser.hasMoreTokens()) {
@@ -58,6 +70,23 @@ public class ErdModelPath extends ErdModelVariant {
         }
     }
 
+    @Override
+    public ErdModelPath copy() {
+        if (path == null) {
+            return new ErdModelPath();
+        }
+        Collection<Point> res = new LinkedList<>();
+        for (Point p : path) {
+            res.add(new Point(p));
+        }
+        return new ErdModelPath(res);
+    }
+
+    @Override
+    public void freeze() {
+        frozen = true;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -25,12 +25,14 @@ package org.vrsl.jet.models.erd.variants.transformations;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import org.vrsl.jet.models.cim.MutableVariant;
 import org.vrsl.jet.models.erd.ErdModelVariant;
 
-public class SchemaTransformerPreferences extends ErdModelVariant {
+public class SchemaTransformerPreferences extends ErdModelVariant implements MutableVariant<SchemaTransformerPreferences> {
 
     private String transformerName;
     private Map<String, String> properties;
+    private volatile boolean frozen = false;
 
     public SchemaTransformerPreferences() {
         properties = new LinkedHashMap<>();
@@ -41,10 +43,12 @@ public class SchemaTransformerPreferences extends ErdModelVariant {
     }
 
     public void setTransformerName(String transformerName) {
+        checkMutable();
         this.transformerName = transformerName;
     }
 
     public void registerProperty(String name, String value) {
+        checkMutable();
         properties.put(name, value);
     }
 
@@ -68,10 +72,30 @@ public class SchemaTransformerPreferences extends ErdModelVariant {
 
     @Override
     public void initFormText(String text) {
+        checkMutable();
         String transformerNameKeyPair = text.substring(0, text.indexOf('{'));
         String propertyesKeyPairs = text.substring(text.indexOf('{'), text.length()).replace('{', ' ').replace('}', ' ').trim();
 
         transformerName = parseNameValuePairs(transformerNameKeyPair).get("transformer");
         properties = parseNameValuePairs(propertyesKeyPairs);
     }
+
+    @Override
+    public SchemaTransformerPreferences copy() {
+        SchemaTransformerPreferences res = new SchemaTransformerPreferences();
+        res.transformerName = transformerName;
+        res.properties.putAll(properties);
+        return res;
+    }
+
+    @Override
+    public void freeze() {
+        frozen = true;
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("Preferences of " + transformerName + " belong to a schema snapshot and can't be changed.");
+        }
+    }
 }
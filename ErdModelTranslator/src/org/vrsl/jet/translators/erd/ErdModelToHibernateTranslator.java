@@ -24,15 +24,21 @@
 package org.vrsl.jet.translators.erd;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.openide.util.lookup.ServiceProvider;
@@ -50,9 +56,11 @@ import org.vrsl.jet.models.erd.variants.details.ErdModelPrimaryKey;
 import org.vrsl.jet.models.erd.variants.entities.ErdModelEntity;
 import org.vrsl.jet.models.erd.variants.types.ErdModelType;
 import org.vrsl.jet.translators.AbstractCimTranslator;
+import org.vrsl.jet.translators.AssociationIndex;
 import org.vrsl.jet.translators.CimTranslatorError;
 import org.vrsl.jet.translators.ValidationResult;
 import org.vrsl.jet.translators.erd.internals.AbstractErdTranslator;
+import org.vrsl.jet.translators.erd.utilities.GeneratedFiles;
 import org.vrsl.jet.translators.erd.utilities.PathResolver;
 import org.vrsl.jet.translators.properties.TranslatorPropertyMetadata;
 
@@ -64,9 +72,13 @@ public class ErdModelToHibernateTranslator extends AbstractErdTranslator {
     // -- Translator property names -----------------------------------------
     private static final String PACKAGE_NAME = "Package Name";
     private static final String PACKAGE_PATH = "Package Path";
+    private static final String WORKER_THREADS = "Worker Threads";
+    private static final String SKIP_UNCHANGED = "Skip Unchanged Files";
     // -- Default values for translator properties --------------------------
     private static final String DEFAULT_PACKAGE_NAME = "idetest.data";
     private static final String DEFAULT_PACKAGE_PATH = "./data";
+    private static final Integer DEFAULT_WORKER_THREADS = 1;
+    private static final Boolean DEFAULT_SKIP_UNCHANGED = Boolean.TRUE;
 
     static {
         temporalTypes.put("Date", "javax.persistence.TemporalType.TIMESTAMP");
@@ -74,6 +86,8 @@ public class ErdModelToHibernateTranslator extends AbstractErdTranslator {
     // -- Current translator propertis settings -----------------------------
     private String packageName = DEFAULT_PACKAGE_NAME;
     private String packagePath = DEFAULT_PACKAGE_PATH;
+    private int workerThreads = DEFAULT_WORKER_THREADS;
+    private boolean skipUnchanged = DEFAULT_SKIP_UNCHANGED;
 
     @Override
     public String getSource() {
@@ -95,6 +109,8 @@ public class ErdModelToHibernateTranslator extends AbstractErdTranslator {
         Map<String, Object> res = new LinkedHashMap<>();
         res.put(PACKAGE_NAME, packageName);
         res.put(PACKAGE_PATH, packagePath);
+        res.put(WORKER_THREADS, workerThreads);
+        res.put(SKIP_UNCHANGED, skipUnchanged);
         // --------------------------------------------------------------------
         /*
          res.put("Int", 1);
@@ -110,6 +126,8 @@ public class ErdModelToHibernateTranslator extends AbstractErdTranslator {
         Map<String, TranslatorPropertyMetadata> res = new LinkedHashMap<>();
         res.put(PACKAGE_NAME, new TranslatorPropertyMetadata(TranslatorPropertyMetadata.Type.STRING));
         res.put(PACKAGE_PATH, new TranslatorPropertyMetadata(TranslatorPropertyMetadata.Type.PATH));
+        res.put(WORKER_THREADS, new TranslatorPropertyMetadata(TranslatorPropertyMetadata.Type.INTEGER));
+        res.put(SKIP_UNCHANGED, new TranslatorPropertyMetadata(TranslatorPropertyMetadata.Type.BOOLEAN));
         // --------------------------------------------------------------------
         /*
          res.put("Int", new TranslatorPropertyMetadata(TranslatorPropertyMetadata.Type.INTEGER));
@@ -124,6 +142,8 @@ public class ErdModelToHibernateTranslator extends AbstractErdTranslator {
     public void setProperties(Map<String, Object> properties) {
         packageName = getPropertyValue(properties, PACKAGE_NAME, DEFAULT_PACKAGE_NAME);
         packagePath = getPropertyValue(properties, PACKAGE_PATH, DEFAULT_PACKAGE_PATH);
+        workerThreads = Math.max(1, getPropertyValue(properties, WORKER_THREADS, DEFAULT_WORKER_THREADS));
+        skipUnchanged = getPropertyValue(properties, SKIP_UNCHANGED, DEFAULT_SKIP_UNCHANGED);
     }
 
     @Override
@@ -142,41 +162,99 @@ public class ErdModelToHibernateTranslator extends AbstractErdTranslator {
 
     @Override
     public void translate(Schema schema, String path) throws CimTranslatorError {
+        // -- Associations are indexed once per translation, the index is only read --------
+        generateSources(schema, AssociationIndex.build(schema), path);
+    }
+
+    private void generateSources(Schema schema, AssociationIndex associations, String path) throws CimTranslatorError {
+        PathResolver.resolve(path + "/" + packagePath);
+        // -- The last class wins if several of them are mapped to the same file ------------
+        Map<File, Class> sources = new LinkedHashMap<>();
+        for (Class c : schema.<Class>getElements(new Qualifier<>(new ErdModelEntity()))) {
+            sources.put(new File(path + "/" + packagePath + "/" + c.getName() + ".java"), c);
+        }
+        // -- Generating files, errors are collected per file --------------------------------
+        GeneratedFiles output = new GeneratedFiles(skipUnchanged);
+        Map<File, Exception> errors = new LinkedHashMap<>();
+        if (workerThreads > 1 && sources.size() > 1) {
+            generateInParallel(schema, associations, sources, output, errors);
+        } else {
+            for (Entry<File, Class> item : sources.entrySet()) {
+                try {
+                    generateClassFile(item.getValue(), associations, item.getKey(), output);
+                } catch (NamedElementNotFoundException | IOException | RuntimeException ex) {
+                    errors.put(item.getKey(), ex);
+                }
+            }
+        }
+        reportOutput(schema, output);
+        // -- Reporting all failed files at once ---------------------------------------------
+        if (!errors.isEmpty()) {
+            StringBuilder sb = new StringBuilder("Fail to translate " + schema.getName() + ". Failed files:");
+            for (Entry<File, Exception> item : errors.entrySet()) {
+                Logger.getLogger(ErdModelToHibernateTranslator.class
+                        .getName()).log(Level.WARNING, "Fail to generate " + item.getKey().getPath(), item.getValue());
+                sb.append('\n').append(item.getKey().getPath()).append(": ").append(item.getValue().getMessage());
+            }
+            throw new CimTranslatorError(sb.toString(), errors.values().iterator().next());
+        }
+    }
+
+    private void generateInParallel(Schema schema, final AssociationIndex associations, Map<File, Class> sources, final GeneratedFiles output, Map<File, Exception> errors) throws CimTranslatorError {
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(workerThreads, sources.size()));
         try {
-            PathResolver.resolve(path + "/" + packagePath);
-            for (Class c : schema.<Class>getElements(new Qualifier<>(new ErdModelEntity()))) {
-                try (OutputStream f = new FileOutputStream(path + "/" + packagePath + "/" + c.getName() + ".java")) {
-                    try (PrintWriter prn = new PrintWriter(f)) {
-                        // -- Then generate new DDL for all classes ---------------------------------
-                        generateClassRepresentation(c, prn);
+            List<Future<Void>> tasks = new ArrayList<>(sources.size());
+            for (final Entry<File, Class> item : sources.entrySet()) {
+                tasks.add(workers.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        generateClassFile(item.getValue(), associations, item.getKey(), output);
+                        return null;
+                    }
+                }));
+            }
+            // -- Waiting for the results in the order of classes ----------------------------
+            int i = 0;
+            for (File f : sources.keySet()) {
+                try {
+                    tasks.get(i++).get();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof Error) {
+                        throw (Error) ex.getCause();
                     }
-                } catch (IOException ex) {
-                    Logger.getLogger(ErdModelToSqlTranslator.class
-                            .getName()).log(Level.WARNING, null, ex);
-                    throw new CimTranslatorError(
-                            "Fail to translate " + schema.getName(), ex);
+                    errors.put(f, (Exception) ex.getCause());
                 }
             }
-        } catch (NamedElementNotFoundException ex) {
-            Logger.getLogger(ErdModelToSqlTranslator.class
-                    .getName()).log(Level.WARNING, null, ex);
-            throw new CimTranslatorError(
-                    "Fail to translate " + schema.getName(), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CimTranslatorError("Translation of " + schema.getName() + " has been interrupted.", ex);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private void generateClassFile(Class c, AssociationIndex associations, File f, GeneratedFiles output) throws NamedElementNotFoundException, IOException {
+        // -- Rendering the whole source in memory and writing it at once --------------------
+        StringWriter content = new StringWriter();
+        try (PrintWriter prn = new PrintWriter(content)) {
+            generateClassRepresentation(c, associations, prn);
         }
+        output.write(f, content.toString());
     }
 
-    private void generateClassRepresentation(Class c, PrintWriter prn) throws NamedElementNotFoundException {
+    private void generateClassRepresentation(Class c, AssociationIndex associations, PrintWriter prn) throws NamedElementNotFoundException {
         prn.println("package " + packageName + ";");
-        generateIncludes(c, prn);
+        generateIncludes(c, associations, prn);
         prn.println();
         prn.println("@Entity");
         prn.println("@Table(name=\"" + c.getName() + "\")");
         prn.println("public class " + c.getName() + " implements Serializable {");
         prn.println();
         buldClassFields(c, prn);
-        buildRelationshipsFields(c, prn);
+        buildRelationshipsFields(c, associations, prn);
         buildClassSettersAndGetters(c, prn);
-        buildRelationships(c, prn);
+        buildRelationships(c, associations, prn);
         prn.println("}");
     }
 
@@ -184,8 +262,9 @@ public class ErdModelToHibernateTranslator extends AbstractErdTranslator {
         for (Property p : c.getProperties()) {
             String type = p.getFirstByVariantType(ErdModelType.class).getValue().toString();
             String name = p.getName();
-            boolean isKey = p.getFirstByVariantType(ErdModelPrimaryKey.class).getValue().isPrimiryKey();
-            boolean isAutogenerated = p.getFirstByVariantType(ErdModelPrimaryKey.class).getValue().isUseAutoSequence();
+            ErdModelPrimaryKey pk = p.getFirstByVariantType(ErdModelPrimaryKey.class).getValue();
+            boolean isKey = pk.isPrimiryKey();
+            boolean isAutogenerated = pk.isUseAutoSequence();
             String suggestedName = p.getFirstByVariantType(ErdModelMappingDetails.class).getValue().getMapFieldTo();
             // -- Getting real names for the field and column ---------------------------------------------
             String columnName = (suggestedName != null && !suggestedName.isEmpty()) ? suggestedName : p.getName();
@@ -236,7 +315,7 @@ public class ErdModelToHibernateTranslator extends AbstractErdTranslator {
         prn.println("\t}");
     }
 
-    private void generateIncludes(Class c, PrintWriter prn) throws NamedElementNotFoundException {
+    private void generateIncludes(Class c, AssociationIndex associations, PrintWriter prn) throws NamedElementNotFoundException {
         boolean hasDateDef = false;
         boolean hasKey = false;
         boolean hasAutogenerated = false;
@@ -253,15 +332,16 @@ public class ErdModelToHibernateTranslator extends AbstractErdTranslator {
             if ("Date".equals(type)) {
                 hasDateDef = true;
             }
-            if (p.getFirstByVariantType(ErdModelPrimaryKey.class).getValue().isPrimiryKey()) {
+            ErdModelPrimaryKey pk = p.getFirstByVariantType(ErdModelPrimaryKey.class).getValue();
+            if (pk.isPrimiryKey()) {
                 hasKey = true;
-                if (p.getFirstByVariantType(ErdModelPrimaryKey.class).getValue().isUseAutoSequence()) {
+                if (pk.isUseAutoSequence()) {
                     hasAutogenerated = true;
                 }
             } else {
                 hasBasic = true;
             }
-            for (Association a : AbstractCimTranslator.findAssociations(c.getSchema(), c)) {
+            for (Association a : findAssociations(associations, c)) {
                 if (isAssociationToItself(a)) {
                     if (!isOneToOneAssociation(a)) {
                         hasManyToOne = true;
@@ -384,8 +464,8 @@ public class ErdModelToHibernateTranslator extends AbstractErdTranslator {
         }
     }
 
-    private void buildRelationshipsFields(Class c, PrintWriter prn) throws NamedElementNotFoundException {
-        for (Association a : AbstractCimTranslator.findAssociations(c.getSchema(), c)) {
+    private void buildRelationshipsFields(Class c, AssociationIndex associations, PrintWriter prn) throws NamedElementNotFoundException {
+        for (Association a : findAssociations(associations, c)) {
             if (isAssociationToItself(a)) {
                 if (!isOneToOneAssociation(a)) {
                     buildSelfOneToManyClassField(c, a, prn);
@@ -576,8 +656,8 @@ public class ErdModelToHibernateTranslator extends AbstractErdTranslator {
         prn.println("\tprivate " + className + " " + fieldName + ";");
     }
 
-    private void buildRelationships(Class c, PrintWriter prn) throws NamedElementNotFoundException {
-        for (Association a : AbstractCimTranslator.findAssociations(c.getSchema(), c)) {
+    private void buildRelationships(Class c, AssociationIndex associations, PrintWriter prn) throws NamedElementNotFoundException {
+        for (Association a : findAssociations(associations, c)) {
             if (isAssociationToItself(a)) {
                 if (!isOneToOneAssociation(a)) {
                     buildSelfOneToManyRelationships(c, a, prn);
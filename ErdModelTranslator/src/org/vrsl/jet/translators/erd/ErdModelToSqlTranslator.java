@@ -23,20 +23,26 @@
  */
 package org.vrsl.jet.translators.erd;
 
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.openide.util.lookup.ServiceProvider;
@@ -51,6 +57,7 @@ import org.vrsl.jet.models.erd.variants.associations.ErdModelReferenceMultiplici
 import org.vrsl.jet.models.erd.variants.details.ErdModelPrimaryKey;
 import org.vrsl.jet.models.erd.variants.entities.ErdModelEntity;
 import org.vrsl.jet.translators.AbstractCimTranslator;
+import org.vrsl.jet.translators.AssociationIndex;
 import org.vrsl.jet.translators.CimTranslatorError;
 import org.vrsl.jet.translators.erd.internals.AbstractErdTranslator;
 import org.vrsl.jet.translators.erd.internals.sql.MySQLDialectWriter;
@@ -58,6 +65,7 @@ import org.vrsl.jet.translators.erd.internals.sql.OracleDialectWriter;
 import org.vrsl.jet.translators.erd.internals.sql.PostgreSqlDialectWriter;
 import org.vrsl.jet.translators.erd.internals.sql.SqlDialectWriter;
 import org.vrsl.jet.translators.erd.utilities.ForeignKeyInfo;
+import org.vrsl.jet.translators.erd.utilities.GeneratedFiles;
 import org.vrsl.jet.translators.erd.utilities.PathResolver;
 import org.vrsl.jet.translators.properties.TranslatorPropertyMetadata;
 
@@ -77,14 +85,17 @@ public class ErdModelToSqlTranslator extends AbstractErdTranslator {
     private static final String SQL_DIALECT = "SQL Dialect";
     private static final String SQL_SCRIPT_NAME = "SQL DDL Script Name";
     private static final String SQL_SCRIPT_PATH = "SQL DDL Script Path";
+    private static final String SKIP_UNCHANGED = "Skip Unchanged Files";
     // -- Default values for translator properties --------------------------
     private static final String DEFAULT_SQL_DIALECT = "MySQL";
     private static final String DEFAULT_SQL_SCRIPT_NAME = "GeneratedDDL.sql";
     private static final String DEFAULT_SQL_SCRIPT_PATH = ".";
+    private static final Boolean DEFAULT_SKIP_UNCHANGED = Boolean.TRUE;
     // -- Current translator propertis settings -----------------------------
     private String dialect = "MySQL";
     private String sqlScriptName = "GeneratedDDL.sql";
     private String sqlScriptPath = ".";
+    private boolean skipUnchanged = DEFAULT_SKIP_UNCHANGED;
     private final List<Class> processingOrder = new ArrayList<>();
 
     @Override
@@ -108,6 +119,7 @@ public class ErdModelToSqlTranslator extends AbstractErdTranslator {
         res.put(SQL_SCRIPT_NAME, sqlScriptName);
         res.put(SQL_SCRIPT_PATH, sqlScriptPath);
         res.put(SQL_DIALECT, dialect);
+        res.put(SKIP_UNCHANGED, skipUnchanged);
         return res;
     }
 
@@ -117,6 +129,7 @@ public class ErdModelToSqlTranslator extends AbstractErdTranslator {
         sqlScriptPath = getPropertyValue(properties, SQL_SCRIPT_PATH, DEFAULT_SQL_SCRIPT_PATH);
         dialect = getPropertyValue(properties, SQL_DIALECT, DEFAULT_SQL_DIALECT);
         dialectWriter = dialectsTable.get(dialect);
+        skipUnchanged = getPropertyValue(properties, SKIP_UNCHANGED, DEFAULT_SKIP_UNCHANGED);
     }
 
     @Override
@@ -128,99 +141,177 @@ public class ErdModelToSqlTranslator extends AbstractErdTranslator {
         res.put(SQL_SCRIPT_NAME, new TranslatorPropertyMetadata(TranslatorPropertyMetadata.Type.STRING));
         res.put(SQL_SCRIPT_PATH, new TranslatorPropertyMetadata(TranslatorPropertyMetadata.Type.STRING));
         res.put(SQL_DIALECT, new TranslatorPropertyMetadata(TranslatorPropertyMetadata.Type.SET, dialects));
+        res.put(SKIP_UNCHANGED, new TranslatorPropertyMetadata(TranslatorPropertyMetadata.Type.BOOLEAN));
         return res;
     }
 
     @Override
     public void translate(Schema schema, String path) throws CimTranslatorError {
+        // -- Associations are indexed once per translation, the index is only read --------
+        generateScript(schema, AssociationIndex.build(schema), path);
+    }
+
+    private void generateScript(Schema schema, AssociationIndex associations, String path) throws CimTranslatorError {
         PathResolver.resolve(path + "/" + sqlScriptPath);
-        try (OutputStream f = new FileOutputStream(path + "/" + sqlScriptPath + "/" + sqlScriptName)) {
-            try (PrintWriter prn = new PrintWriter(f)) {
-                Collection<Class> buildOrder = buildProcessingOrder(schema);
-                // -- Dropping tables the first of all --------------------------------------
+        try {
+            // -- Rendering the whole script in memory first ----------------------------------
+            StringWriter content = new StringWriter();
+            try (PrintWriter prn = new PrintWriter(content)) {
+                Set<String> cyclicTables = new HashSet<>();
+                List<Class> buildOrder = buildProcessingOrder(schema, cyclicTables);
+                // -- Generating new DDL for all classes first, so tables which get ---------
+                // -- foreign keys by ALTER TABLE are known when drops are written ----------
+                Set<String> pendingTables = new HashSet<>();
+                for (Class c : buildOrder) {
+                    pendingTables.add(c.getName());
+                }
+                Set<String> deferredTables = new HashSet<>();
+                StringWriter tables = new StringWriter();
+                StringWriter deferred = new StringWriter();
+                try (PrintWriter tablesPrn = new PrintWriter(tables); PrintWriter deferredPrn = new PrintWriter(deferred)) {
+                    for (Class c : buildOrder) {
+                        generateClassRepresentation(c, associations, pendingTables, cyclicTables, deferredTables, tablesPrn, deferredPrn);
+                    }
+                }
+                // -- Dropping tables the first of all, tables referred by the foreign ------
+                // -- keys added afterwards are still referred when they are dropped --------
                 List<Class> backwardBuildOrder = new ArrayList<>(buildOrder);
                 Collections.reverse(backwardBuildOrder);
                 for (Class c : backwardBuildOrder) {
-                    prn.println("DROP TABLE " + c.getName() + ';');
+                    dialectWriter.writeDropTable(c, deferredTables.contains(c.getName()), prn);
                 }
                 prn.println();
-                // -- Then generate new DDL for all classes ---------------------------------
-                for (Class c : buildOrder) {
-                    generateClassRepresentation(c, prn);
-                }
+                prn.print(tables.toString());
+                // -- Foreign keys to tables created later go at the very end ---------------
+                prn.print(deferred.toString());
             }
+            // -- Script is only written if it has been changed -------------------------------
+            GeneratedFiles output = new GeneratedFiles(skipUnchanged);
+            output.write(new File(path + "/" + sqlScriptPath + "/" + sqlScriptName), content.toString());
+            reportOutput(schema, output);
         } catch (NamedElementNotFoundException | IOException ex) {
             Logger.getLogger(ErdModelToSqlTranslator.class.getName()).log(Level.WARNING, null, ex);
             throw new CimTranslatorError("Fail to translate " + schema.getName(), ex);
         }
     }
 
-    private Collection<Class> buildProcessingOrder(Schema schema) throws NamedElementNotFoundException {
-        Collection<Class> res = new LinkedList<>();
-        // -- Reading call classes from the schema and trying to place them ------------------
-        Map<String, Boolean> placements = new HashMap<>();
+    /**
+     * Orders tables so that tables referred by mandatory foreign keys are
+     * created first. Tables which can't be ordered so because of cycles are
+     * placed afterwards and their names are added to the cyclic tables.
+     */
+    private List<Class> buildProcessingOrder(Schema schema, Set<String> cyclicTables) throws NamedElementNotFoundException {
+        // -- Classes are swept in the same order as before so the DDL stays stable ----------
+        Set<String> names = new HashSet<>();
         for (Class c : schema.<Class>getElements(new Qualifier<>(new ErdModelEntity()))) {
-            placements.put(c.getName(), Boolean.FALSE);
+            names.add(c.getName());
         }
-        // -- Checking if we have anything in schema -----------------------------------------
-        if (placements.isEmpty()) {
-            return res;
+        Map<String, TableNode> nodes = new HashMap<>();
+        List<TableNode> sweep = new ArrayList<>(names.size());
+        for (String name : names) {
+            TableNode n = new TableNode(schema.<Class>getElements(name).get(0), sweep.size());
+            nodes.put(name, n);
+            sweep.add(n);
         }
-        // -- Trying to place all classes in the order ---------------------------------------
-        boolean placementIsDone = false;
-        while (!placementIsDone) {
-            for (String className : placements.keySet()) {
-                Class c = schema.<Class>getElements(className).get(0);
-                Collection<Association> classAssociations = AbstractCimTranslator.findAssociations(schema, c);
-                // -- Looking if all related classes are placed already ----------------------
-                boolean relatedClassesArePlaced = true;
-                for (Association a : classAssociations) {
-                    if (!isOneToOneAssociation(a)) {
-                        for (Reference r : a.getReferences()) {
-                            // -- Skiping references to itself -----------------------------------
-                            if (r.getReferedClass() != c && r.getReferedClass().hasVariantTypeQualifier(ErdModelEntity.class)) {
-                                ErdModelReferenceMultiplicity.Category assocCategory = r.getFirstByVariantType(ErdModelReferenceMultiplicity.class).getValue().getCategory();
-                                if (assocCategory != ErdModelReferenceMultiplicity.Category.NONE_OR_MANY && assocCategory != ErdModelReferenceMultiplicity.Category.MANY) {
-                                    if (!placements.get(r.getReferedClass().getName())) {
-                                        relatedClassesArePlaced = false;
-                                    }
-                                }
-                            }
-                        }
-                    } else {
-                        for (Reference r : a.getReferences()) {
-                            // -- Skiping references to itself -----------------------------------
-                            if (r.getReferedClass() != c && r.getReferedClass().hasVariantTypeQualifier(ErdModelEntity.class)) {
-                                ErdModelReferenceMultiplicity.Category assocCategory = r.getFirstByVariantType(ErdModelReferenceMultiplicity.class).getValue().getCategory();
-                                if (assocCategory != ErdModelReferenceMultiplicity.Category.NONE_OR_ONE) {
-                                    if (!placements.get(r.getReferedClass().getName())) {
-                                        relatedClassesArePlaced = false;
-                                    }
-                                }
-                            }
+        // -- Building dependencies between tables in one pass over associations ------------
+        for (Association a : schema.<Association>getElements(Association.class)) {
+            boolean oneToOne = isOneToOneAssociation(a);
+            List<Reference> refs = a.getReferences();
+            Set<TableNode> owners = new HashSet<>();
+            for (Reference owner : refs) {
+                TableNode n = nodes.get(owner.getReferedClass().getName());
+                if (n == null || !owners.add(n)) {
+                    continue;
+                }
+                for (Reference r : refs) {
+                    // -- Skiping references to itself -----------------------------------------
+                    if (r.getReferedClass() != n.table && r.getReferedClass().hasVariantTypeQualifier(ErdModelEntity.class)) {
+                        ErdModelReferenceMultiplicity.Category assocCategory = r.getFirstByVariantType(ErdModelReferenceMultiplicity.class).getValue().getCategory();
+                        boolean isMandatory = oneToOne
+                                ? assocCategory != ErdModelReferenceMultiplicity.Category.NONE_OR_ONE
+                                : assocCategory != ErdModelReferenceMultiplicity.Category.NONE_OR_MANY && assocCategory != ErdModelReferenceMultiplicity.Category.MANY;
+                        TableNode dependency = nodes.get(r.getReferedClass().getName());
+                        if (isMandatory && dependency != null && dependency != n) {
+                            n.dependencies.add(dependency);
                         }
                     }
                 }
-                // -- Test if we are ok here to place a current class ------------------------
-                if (!placements.get(c.getName()) && relatedClassesArePlaced) {
-                    placements.put(c.getName(), Boolean.TRUE);
-                    res.add(c);
+            }
+        }
+        // -- Placing tables which have all their dependencies placed already ----------------
+        Deque<TableNode> ready = new ArrayDeque<>();
+        for (TableNode n : sweep) {
+            n.pending = n.dependencies.size();
+            for (TableNode d : n.dependencies) {
+                d.dependants.add(n);
+            }
+            if (n.pending == 0) {
+                ready.add(n);
+            }
+        }
+        List<TableNode> placed = new ArrayList<>(sweep.size());
+        while (!ready.isEmpty()) {
+            TableNode n = ready.poll();
+            // -- Number of the sweep the table would have been placed at ---------------------
+            for (TableNode d : n.dependencies) {
+                n.round = Math.max(n.round, d.position < n.position ? d.round : d.round + 1);
+            }
+            place(n, placed, ready);
+        }
+        Collections.sort(placed, new Comparator<TableNode>() {
+
+            @Override
+            public int compare(TableNode n1, TableNode n2) {
+                return n1.round != n2.round ? Integer.compare(n1.round, n2.round) : Integer.compare(n1.position, n2.position);
+            }
+        });
+        // -- Breaking cycles, foreign keys of these tables are added afterwards -------------
+        if (placed.size() < sweep.size()) {
+            List<String> cyclic = new ArrayList<>();
+            PriorityQueue<TableNode> unlocked = new PriorityQueue<>(11, new Comparator<TableNode>() {
+
+                @Override
+                public int compare(TableNode n1, TableNode n2) {
+                    return Integer.compare(n1.position, n2.position);
                 }
-                // -- Testing if we have any classes left for a placement --------------------
-                placementIsDone = true;
-                for (Boolean b : placements.values()) {
-                    if (!b) {
-                        placementIsDone = false;
-                        break;
+            });
+            for (TableNode n : sweep) {
+                if (!n.placed) {
+                    cyclic.add(n.table.getName());
+                    place(n, placed, unlocked);
+                    cyclicTables.add(n.table.getName());
+                    while (!unlocked.isEmpty()) {
+                        TableNode u = unlocked.poll();
+                        place(u, placed, unlocked);
+                        cyclicTables.add(u.table.getName());
                     }
                 }
             }
+            Logger.getLogger(ErdModelToSqlTranslator.class.getName()).log(Level.WARNING,
+                    "Cyclic references between tables {0} of {1}, their foreign keys are added by ALTER TABLE statements.",
+                    new Object[]{cyclic, schema.getName()});
         }
         // -- Returing found classes in an order ---------------------------------------------
+        List<Class> res = new ArrayList<>(placed.size());
+        for (TableNode n : placed) {
+            res.add(n.table);
+        }
         return res;
     }
 
-    private void generateClassRepresentation(Class c, PrintWriter prn) throws NamedElementNotFoundException {
+    private static void place(TableNode n, List<TableNode> placed, Collection<TableNode> ready) {
+        n.placed = true;
+        placed.add(n);
+        for (TableNode d : n.dependants) {
+            if (--d.pending == 0 && !d.placed) {
+                ready.add(d);
+            }
+        }
+    }
+
+    private void generateClassRepresentation(Class c, AssociationIndex associations, Set<String> pendingTables, Set<String> cyclicTables,
+            Set<String> deferredTables, PrintWriter prn, PrintWriter deferredPrn) throws NamedElementNotFoundException {
+        pendingTables.remove(c.getName());
         Collection<TableColumn> prKeyColumns = new LinkedList<>();
         prn.println("CREATE TABLE " + c.getName() + " (");
         for (Property p : c.getProperties()) {
@@ -236,7 +327,7 @@ public class ErdModelToSqlTranslator extends AbstractErdTranslator {
         }
         // -- Adding fields for many-to-one associations ---------------------------------
         Map<String, ForeignKeyInfo> frKeyNames = new HashMap<>();
-        for (Association a : AbstractCimTranslator.findAssociations(c.getSchema(), c)) {
+        for (Association a : findAssociations(associations, c)) {
             if (isAssociationToItself(a)) {
                 if (!isOneToOneAssociation(a)) {
                     buildSelfOneToManyAssociation(c, a, frKeyNames, prn);
@@ -258,11 +349,19 @@ public class ErdModelToSqlTranslator extends AbstractErdTranslator {
         // -- Adding foreign keys --------------------------------------------------------
         if (!frKeyNames.isEmpty()) {
             for (Entry<String, ForeignKeyInfo> item : frKeyNames.entrySet()) {
-                prn.println(",");
                 ForeignKeyInfo fki = item.getValue();
                 String pkNameUpper = fki.getIdName().substring(0, 1).toUpperCase(Locale.getDefault()) + fki.getIdName().substring(1, fki.getIdName().length());
                 String frKeyName = fki.getSuggestedName() != null ? fki.getSuggestedName() : (fki.getTableName() + pkNameUpper);
-                dialectWriter.writeForeignConstraint(frKeyName, fki, prn);
+                if (cyclicTables.contains(c.getName()) && pendingTables.contains(fki.getTableName())) {
+                    // -- Refered table of a cycle doesn't exist yet -------------------------
+                    deferredTables.add(fki.getTableName());
+                    deferredPrn.println("ALTER TABLE " + c.getName() + " ADD");
+                    dialectWriter.writeForeignConstraint(frKeyName, fki, deferredPrn);
+                    deferredPrn.println(";\n");
+                } else {
+                    prn.println(",");
+                    dialectWriter.writeForeignConstraint(frKeyName, fki, prn);
+                }
             }
         }
         prn.println();
@@ -370,4 +469,20 @@ public class ErdModelToSqlTranslator extends AbstractErdTranslator {
         // -- Printing a fiald's representation ----------------------
         dialectWriter.writeForeignKeyColumn(frKeyName, col, modifiers, prn);
     }
+
+    private static final class TableNode {
+
+        private final Class table;
+        private final int position;
+        private final Set<TableNode> dependencies = new HashSet<>();
+        private final List<TableNode> dependants = new ArrayList<>();
+        private int pending;
+        private int round;
+        private boolean placed;
+
+        TableNode(Class table, int position) {
+            this.table = table;
+            this.position = position;
+        }
+    }
 }
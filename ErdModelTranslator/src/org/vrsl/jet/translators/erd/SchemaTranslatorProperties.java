@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.translators.erd;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.vrsl.jet.models.cim.NamedElementNotFoundException;
+import org.vrsl.jet.models.cim.Qualifier;
+import org.vrsl.jet.models.cim.Schema;
+import org.vrsl.jet.models.erd.variants.transformations.SchemaTransformerPreferences;
+import org.vrsl.jet.translators.AbstractCimTranslator;
+import org.vrsl.jet.translators.properties.TranslatorPropertyMetadata;
+
+/**
+ * Properties of translators stored in a schema as
+ * {@link SchemaTransformerPreferences} qualifiers.
+ */
+public class SchemaTranslatorProperties {
+
+    /**
+     * Finds preferences of the translator stored in the schema.
+     *
+     * @return preferences or null if the translator has not been set up for
+     * the schema
+     */
+    public static SchemaTransformerPreferences find(Schema s, String translatorName) throws NamedElementNotFoundException {
+        SchemaTransformerPreferences schemaPrefs = null;
+        List<Qualifier<SchemaTransformerPreferences>> schemaQualifiers = s.getByVariantType(SchemaTransformerPreferences.class);
+        for (Qualifier<SchemaTransformerPreferences> q : schemaQualifiers) {
+            SchemaTransformerPreferences stp = q.getValue();
+            if (stp.getTransformerName().equals(translatorName)) {
+                schemaPrefs = stp;
+            }
+        }
+        return schemaPrefs;
+    }
+
+    /**
+     * Converts stored preferences of the translator to typed properties which
+     * can be passed to the translator. Properties which have not been stored
+     * get the current values of the translator.
+     *
+     * @return properties or null if the translator has not been set up for
+     * the schema
+     */
+    public static Map<String, Object> read(Schema s, AbstractCimTranslator t) throws NamedElementNotFoundException {
+        SchemaTransformerPreferences schemaPrefs = find(s, t.getName());
+        if (schemaPrefs == null) {
+            return null;
+        }
+        Map<String, Object> res = new LinkedHashMap<>();
+        Map<String, TranslatorPropertyMetadata> metadata = t.getPropertiesMetadata();
+        for (Entry<String, TranslatorPropertyMetadata> item : metadata.entrySet()) {
+            String name = item.getKey();
+            String value = schemaPrefs.getProperty(name);
+            if (value != null) {
+                switch (item.getValue().getPropertyType()) {
+                    case SET:
+                    case PATH:
+                    case STRING:
+                        res.put(name, value);
+                        break;
+                    case INTEGER:
+                        res.put(name, new Integer(value));
+                        break;
+                    case NUMBER:
+                        res.put(name, new Double(value));
+                        break;
+                    case DATE:
+                        res.put(name, new Date(value));
+                        break;
+                    case BOOLEAN:
+                        res.put(name, Boolean.valueOf(value));
+                        break;
+                }
+            } else {
+                res.put(name, t.getProperties().get(name));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Stores properties of the translator in its preferences of the schema,
+     * nothing is stored if the translator has not been set up for the schema.
+     * Preferences of a schema snapshot are frozen and can't be written.
+     *
+     * @throws IllegalStateException if the schema is a snapshot
+     */
+    public static void write(Schema s, AbstractCimTranslator t, Map<String, Object> props) throws NamedElementNotFoundException {
+        SchemaTransformerPreferences schemaPrefs = find(s, t.getName());
+        if (schemaPrefs != null) {
+            for (Entry<String, Object> item : props.entrySet()) {
+                schemaPrefs.registerProperty(item.getKey(), item.getValue().toString());
+            }
+        }
+    }
+
+    private SchemaTranslatorProperties() {
+    }
+}
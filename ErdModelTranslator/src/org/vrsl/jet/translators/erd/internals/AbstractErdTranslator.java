@@ -35,33 +35,37 @@ import org.vrsl.jet.models.cim.Association;
 import org.vrsl.jet.models.cim.Class;
 import org.vrsl.jet.models.cim.NamedElementNotFoundException;
 import org.vrsl.jet.models.cim.Property;
+import org.vrsl.jet.models.cim.Qualifier;
 import org.vrsl.jet.models.cim.Reference;
+import org.vrsl.jet.models.cim.Schema;
 import org.vrsl.jet.models.erd.variants.associations.ErdModelReferenceMultiplicity;
 import org.vrsl.jet.models.erd.variants.associations.ErdModelReferenceSuggestedName;
 import org.vrsl.jet.models.erd.variants.details.ErdModelMappingDetails;
 import org.vrsl.jet.models.erd.variants.details.ErdModelPrimaryKey;
 import org.vrsl.jet.models.erd.variants.types.ErdModelType;
 import org.vrsl.jet.translators.AbstractCimTranslator;
+import org.vrsl.jet.translators.AssociationIndex;
 import org.vrsl.jet.translators.erd.TableColumn;
 import org.vrsl.jet.translators.erd.internals.sql.MySQLDialectWriter;
 import org.vrsl.jet.translators.erd.internals.sql.SqlDialectWriter;
+import org.vrsl.jet.translators.erd.utilities.GeneratedFiles;
 
 public abstract class AbstractErdTranslator extends AbstractCimTranslator {
 
     // -- SQL dialect writer ------------------------------------------------
     private static SqlDialectWriter defaultDialectWriter = new MySQLDialectWriter();
 
+    protected final void reportOutput(Schema schema, GeneratedFiles output) {
+        Logger.getLogger(getClass().getName()).log(Level.INFO, "{0} of {1}: {2} files written, {3} unchanged files skipped.",
+                new Object[]{getName(), schema.getName(), output.getWrittenCount(), output.getSkippedCount()});
+    }
+
     protected static boolean isOneToOneAssociation(Association a) {
-        try {
-            Reference r1 = a.getReferences().get(0);
-            Reference r2 = a.getReferences().get(1);
-            ErdModelReferenceMultiplicity.Category c1 = r1.getFirstByVariantType(ErdModelReferenceMultiplicity.class).getValue().getCategory();
-            ErdModelReferenceMultiplicity.Category c2 = r2.getFirstByVariantType(ErdModelReferenceMultiplicity.class).getValue().getCategory();
-            return (c1 == ErdModelReferenceMultiplicity.Category.ONE || c1 == ErdModelReferenceMultiplicity.Category.NONE_OR_ONE)
-                    && (c2 == ErdModelReferenceMultiplicity.Category.ONE || c2 == ErdModelReferenceMultiplicity.Category.NONE_OR_ONE);
-        } catch (NamedElementNotFoundException e) {
-            return false;
-        }
+        List<Reference> refs = a.getReferences();
+        ErdModelReferenceMultiplicity.Category c1 = findMultiplicity(refs.get(0));
+        ErdModelReferenceMultiplicity.Category c2 = findMultiplicity(refs.get(1));
+        return (c1 == ErdModelReferenceMultiplicity.Category.ONE || c1 == ErdModelReferenceMultiplicity.Category.NONE_OR_ONE)
+                && (c2 == ErdModelReferenceMultiplicity.Category.ONE || c2 == ErdModelReferenceMultiplicity.Category.NONE_OR_ONE);
     }
 
     protected static boolean isAssociationToItself(Association a) {
@@ -71,15 +75,19 @@ public abstract class AbstractErdTranslator extends AbstractCimTranslator {
     }
 
     protected static boolean isCorrespondingMultiplicityTemplate(Association a, ErdModelReferenceMultiplicity.Category c1, ErdModelReferenceMultiplicity.Category c2) {
-        try {
-            Reference r1 = a.getReferences().get(0);
-            Reference r2 = a.getReferences().get(1);
-            ErdModelReferenceMultiplicity.Category tc1 = r1.getFirstByVariantType(ErdModelReferenceMultiplicity.class).getValue().getCategory();
-            ErdModelReferenceMultiplicity.Category tc2 = r2.getFirstByVariantType(ErdModelReferenceMultiplicity.class).getValue().getCategory();
-            return (c1 == tc1) && (c2 == tc2);
-        } catch (NamedElementNotFoundException e) {
-            return false;
-        }
+        List<Reference> refs = a.getReferences();
+        ErdModelReferenceMultiplicity.Category tc1 = findMultiplicity(refs.get(0));
+        ErdModelReferenceMultiplicity.Category tc2 = findMultiplicity(refs.get(1));
+        return tc1 != null && tc2 != null && (c1 == tc1) && (c2 == tc2);
+    }
+
+    /**
+     * @return the multiplicity category of the reference or null if it has no
+     * multiplicity qualifier
+     */
+    protected static ErdModelReferenceMultiplicity.Category findMultiplicity(Reference r) {
+        Qualifier<ErdModelReferenceMultiplicity> q = r.findFirstByVariantType(ErdModelReferenceMultiplicity.class);
+        return q == null ? null : q.getValue().getCategory();
     }
 
     protected static boolean isMultiWayCorrespondingMultiplicityTemplate(Association a, ErdModelReferenceMultiplicity.Category c1, ErdModelReferenceMultiplicity.Category c2) {
@@ -88,10 +96,8 @@ public abstract class AbstractErdTranslator extends AbstractCimTranslator {
 
     protected static org.vrsl.jet.models.cim.Class getReferedClass(Association a, ErdModelReferenceMultiplicity.Category c) throws NamedElementNotFoundException {
         for (Reference r : a.getReferences()) {
-            if (r.hasVariantTypeQualifier(ErdModelReferenceMultiplicity.class)) {
-                if (r.getFirstByVariantType(ErdModelReferenceMultiplicity.class).getValue().getCategory() == c) {
-                    return r.getReferedClass();
-                }
+            if (findMultiplicity(r) == c) {
+                return r.getReferedClass();
             }
         }
         return null;
@@ -104,9 +110,10 @@ public abstract class AbstractErdTranslator extends AbstractCimTranslator {
         precTypes.add("float");
         precTypes.add("double");
         // -- Getting information about columun from the property --------------------
-        String suggestedName = p.getFirstByVariantType(ErdModelMappingDetails.class).getValue().getMapFieldTo();
-        int suggestedSize = p.getFirstByVariantType(ErdModelMappingDetails.class).getValue().getMapFieldSize();
-        int suggestedPrec = p.getFirstByVariantType(ErdModelMappingDetails.class).getValue().getMapFieldPrec();
+        ErdModelMappingDetails mapping = p.getFirstByVariantType(ErdModelMappingDetails.class).getValue();
+        String suggestedName = mapping.getMapFieldTo();
+        int suggestedSize = mapping.getMapFieldSize();
+        int suggestedPrec = mapping.getMapFieldPrec();
         String originalType = p.getFirstByVariantType(ErdModelType.class).getValue().toString();
         // -- Defining SQL DDL atributes ---------------------------------------------
         String columnName = (suggestedName != null && !suggestedName.isEmpty()) ? suggestedName : p.getName();
@@ -129,7 +136,8 @@ public abstract class AbstractErdTranslator extends AbstractCimTranslator {
 
     protected static String findKeyName(Class c) throws NamedElementNotFoundException {
         for (Property p : c.getProperties()) {
-            if (p.hasVariantTypeQualifier(ErdModelPrimaryKey.class) && p.getFirstByVariantType(ErdModelPrimaryKey.class).getValue().isPrimiryKey()) {
+            Qualifier<ErdModelPrimaryKey> pk = p.findFirstByVariantType(ErdModelPrimaryKey.class);
+            if (pk != null && pk.getValue().isPrimiryKey()) {
                 return p.getName();
             }
         }
@@ -146,10 +154,8 @@ public abstract class AbstractErdTranslator extends AbstractCimTranslator {
     }
 
     protected static String getSuggestdReferenceItemName(Reference r) throws NamedElementNotFoundException {
-        if (r.hasVariantTypeQualifier(ErdModelReferenceSuggestedName.class)) {
-            return r.getFirstByVariantType(ErdModelReferenceSuggestedName.class).getValue().toString();
-        }
-        return null;
+        Qualifier<ErdModelReferenceSuggestedName> q = r.findFirstByVariantType(ErdModelReferenceSuggestedName.class);
+        return q == null ? null : q.getValue().toString();
     }
 
     protected static String deriveForeignKeyNameByClass(Class c, Property p) throws NamedElementNotFoundException {
@@ -176,22 +182,16 @@ public abstract class AbstractErdTranslator extends AbstractCimTranslator {
     }
 
     protected static Collection<String> getMandatoryCheckableCounterparts(Class c) {
+        return getMandatoryCheckableCounterparts(null, c);
+    }
+
+    protected static Collection<String> getMandatoryCheckableCounterparts(AssociationIndex associations, Class c) {
         Collection<String> res = new LinkedList<>();
-        for (Association a : findAssociations(c.getSchema(), c)) {
+        for (Association a : findAssociations(associations, c)) {
             for (Reference r : a.getReferences()) {
                 Class refClass = r.getReferedClass();
-                if (refClass != c) {
-                    if (r.hasVariantTypeQualifier(ErdModelReferenceMultiplicity.class)) {
-                        ErdModelReferenceMultiplicity.Category ct;
-                        try {
-                            ct = r.getFirstByVariantType(ErdModelReferenceMultiplicity.class).getValue().getCategory();
-                            if (ct == ErdModelReferenceMultiplicity.Category.MANY) {
-                                res.add(refClass.getName());
-                            }
-                        } catch (NamedElementNotFoundException ex) {
-                            Logger.getLogger(AbstractErdTranslator.class.getName()).log(Level.SEVERE, null, ex);
-                        }
-                    }
+                if (refClass != c && findMultiplicity(r) == ErdModelReferenceMultiplicity.Category.MANY) {
+                    res.add(refClass.getName());
                 }
             }
         }
@@ -100,6 +100,18 @@ public class MySQLDialectWriter implements SqlDialectWriter {
         prn.print("\tFOREIGN KEY (" + frKeyName + ") REFERENCES " + fki.getTableName() + " (" + fki.getIdName() + ")");
     }
 
+    @Override
+    public void writeDropTable(Class c, boolean cascade, PrintWriter prn) {
+        if (cascade) {
+            // -- MySQL ignores CASCADE, so the checks are off while the table is dropped --
+            prn.println("SET FOREIGN_KEY_CHECKS = 0;");
+            prn.println("DROP TABLE " + c.getName() + ';');
+            prn.println("SET FOREIGN_KEY_CHECKS = 1;");
+        } else {
+            prn.println("DROP TABLE " + c.getName() + ';');
+        }
+    }
+
     @Override
     public String suggestSqlType(String originalType) {
         return model2sqlType.get(originalType);
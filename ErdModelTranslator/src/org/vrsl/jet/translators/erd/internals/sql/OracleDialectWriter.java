@@ -114,6 +114,11 @@ public class OracleDialectWriter implements SqlDialectWriter {
         prn.print("\tCONSTRAINT " + constraintName + " FOREIGN KEY (" + frKeyName + ") REFERENCES " + fki.getTableName() + "(" + fki.getIdName() + ")");
     }
     
+    @Override
+    public void writeDropTable(Class c, boolean cascade, PrintWriter prn) {
+        prn.println("DROP TABLE " + c.getName() + (cascade ? " CASCADE CONSTRAINTS;" : ";"));
+    }
+
     @Override
     public String suggestSqlType(String originalType) {
         return model2sqlType.get(originalType);
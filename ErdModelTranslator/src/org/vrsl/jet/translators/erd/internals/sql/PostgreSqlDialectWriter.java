@@ -94,6 +94,11 @@ public class PostgreSqlDialectWriter implements SqlDialectWriter {
         prn.print("\tFOREIGN KEY (" + frKeyName + ") REFERENCES " + fki.getTableName() + " (" + fki.getIdName() + ")");
     }
 
+    @Override
+    public void writeDropTable(org.vrsl.jet.models.cim.Class c, boolean cascade, PrintWriter prn) {
+        prn.println("DROP TABLE " + c.getName() + (cascade ? " CASCADE;" : ";"));
+    }
+
     @Override
     public String suggestSqlType(String originalType) {
         return model2sqlType.get(originalType);
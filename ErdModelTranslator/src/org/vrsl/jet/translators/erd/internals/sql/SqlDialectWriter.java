@@ -46,4 +46,10 @@ public interface SqlDialectWriter {
     void writePrimaryKeyConstaint(Class c, Collection<TableColumn> pkCols, PrintWriter prn);
 
     void writeForeignConstraint(String frKeyName, ForeignKeyInfo fki, PrintWriter prn);
+
+    /**
+     * @param cascade whether foreign keys of other tables which still refer
+     * to the table have to be dropped with it
+     */
+    void writeDropTable(Class c, boolean cascade, PrintWriter prn);
 }
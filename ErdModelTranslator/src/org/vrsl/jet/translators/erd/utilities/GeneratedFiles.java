@@ -0,0 +1,89 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.translators.erd.utilities;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes generated files of a single translation and counts them. In the
+ * incremental mode a file is only touched when its content differs from the
+ * rendered one, so timestamps of unchanged files stay as they are.
+ */
+public class GeneratedFiles {
+
+    private final boolean skipUnchanged;
+    private final AtomicInteger written = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    public GeneratedFiles(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    /**
+     * Writes rendered content to a file in one go. The content is encoded with
+     * the platform charset, exactly as a PrintWriter over the file would do.
+     *
+     * @return false if the file already had the same content and was skipped
+     */
+    public boolean write(File file, String content) throws IOException {
+        byte[] data = content.getBytes(Charset.defaultCharset());
+        if (skipUnchanged && hasContent(file, data)) {
+            skipped.incrementAndGet();
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try (FileOutputStream f = new FileOutputStream(file)) {
+            FileChannel channel = f.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        written.incrementAndGet();
+        return true;
+    }
+
+    public int getWrittenCount() {
+        return written.get();
+    }
+
+    public int getSkippedCount() {
+        return skipped.get();
+    }
+
+    private static boolean hasContent(File file, byte[] data) throws IOException {
+        // -- Comparing sizes first, most of changed files are caught here ---------
+        if (!file.isFile() || file.length() != data.length) {
+            return false;
+        }
+        return Arrays.equals(Files.readAllBytes(file.toPath()), data);
+    }
+}
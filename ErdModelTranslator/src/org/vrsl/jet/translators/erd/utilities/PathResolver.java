@@ -30,15 +30,15 @@ public class PathResolver {
 
     public static void resolve(String path) {
         StringTokenizer st = new StringTokenizer(path, "/");
-        StringBuilder sb = new StringBuilder();
+        // -- Absolute paths are kept absolute, not resolved against the working directory
+        StringBuilder sb = new StringBuilder(path.startsWith("/") ? "/" : "");
         while (st.hasMoreTokens()) {
             sb.append(st.nextToken());
             String checkedPath = sb.toString();
             File f = new File(checkedPath);
-            if (!f.exists()) {
-                if(!f.mkdir()) {
-                    throw new IllegalStateException("Fail to create a dirrectory " + checkedPath);
-                }
+            // -- The directory may be created concurrently by another translation
+            if (!f.isDirectory() && !f.mkdir() && !f.isDirectory()) {
+                throw new IllegalStateException("Fail to create a dirrectory " + checkedPath);
             }
             sb.append('/');
         }
@@ -27,6 +27,8 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.geom.AffineTransform;
@@ -85,6 +87,11 @@ public class ErdModellerVisualElement extends TopComponent implements MultiViewE
     // -- Print provider ---------------------------------------------------------------
     private InstanceContent content = new InstanceContent();
     private Lookup componetLookup = new AbstractLookup(content);
+    private PrintPage[][] pages;
+    private int pagesWidth;
+    private int pagesHeight;
+    private int pagesSchemaWidth;
+    private int pagesSchemaHeight;
     // -- First run check --------------------------------------------------------------
     private boolean isFirstRun = true;
 
@@ -216,6 +223,7 @@ public class ErdModellerVisualElement extends TopComponent implements MultiViewE
 
     @Override
     public void componentClosed() {
+        panel.close();
     }
 
     @Override
@@ -287,13 +295,19 @@ public class ErdModellerVisualElement extends TopComponent implements MultiViewE
 
     @Override
     public PrintPage[][] getPages(final int width, final int height, double d) {
-        int printMaxHor = panel.getMaxWidth() / width + (panel.getMaxWidth() % width != 0 ? 1 : 0);
-        int printMaxVert = panel.getMaxHeight() / height + (panel.getMaxHeight() % height != 0 ? 1 : 0);
-        PrintPage[][] res = new PrintPage[printMaxHor][printMaxVert];
+        int schemaWidth = panel.getMaxWidth();
+        int schemaHeight = panel.getMaxHeight();
+        // -- The grid is asked for again and again by the print preview -------------------
+        if (pages != null && pagesWidth == width && pagesHeight == height
+                && pagesSchemaWidth == schemaWidth && pagesSchemaHeight == schemaHeight) {
+            return pages;
+        }
+        int printMaxHor = schemaWidth / width + (schemaWidth % width != 0 ? 1 : 0);
+        int printMaxVert = schemaHeight / height + (schemaHeight % height != 0 ? 1 : 0);
+        PrintPage[][] res = new PrintPage[printMaxVert][printMaxHor];
         for (int pv = 0; pv < printMaxVert; pv++) {
             for (int ph = 0; ph < printMaxHor; ph++) {
-                final int pageHor = ph;
-                final int pageVer = pv;
+                final Rectangle area = new Rectangle(ph * width, pv * height, width, height);
                 PrintPage pp = new PrintPage() {
                     @Override
                     public void print(Graphics graphics) {
@@ -303,8 +317,11 @@ public class ErdModellerVisualElement extends TopComponent implements MultiViewE
                         Graphics2D g2d = (Graphics2D) graphics;
 
                         AffineTransform tx = g2d.getTransform();
+                        Shape clip = g2d.getClip();
 
-                        g2d.translate(-pageHor * width, -pageVer * height);
+                        // -- Only the elements within the page are drawn ------------------
+                        g2d.translate(-area.x, -area.y);
+                        g2d.clipRect(area.x, area.y, area.width, area.height);
 
                         RepaintManager currentManager = RepaintManager.currentManager(panel);
                         currentManager.setDoubleBufferingEnabled(false);
@@ -313,11 +330,17 @@ public class ErdModellerVisualElement extends TopComponent implements MultiViewE
                         currentManager.setDoubleBufferingEnabled(true);
 
                         g2d.setTransform(tx);
+                        g2d.setClip(clip);
                     }
                 };
                 res[pv][ph] = pp;
             }
         }
+        pages = res;
+        pagesWidth = width;
+        pagesHeight = height;
+        pagesSchemaWidth = schemaWidth;
+        pagesSchemaHeight = schemaHeight;
         return res;
     }
 
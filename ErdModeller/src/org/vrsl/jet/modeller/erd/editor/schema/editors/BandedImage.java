@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.modeller.erd.editor.schema.editors;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Vector;
+
+/**
+ * Image which is painted band by band when its pixels are read. Only the
+ * last painted band is kept, so writing the image by an encoder which reads
+ * rows from the top to the bottom, as the PNG writer does, takes memory for
+ * one band whatever the size of the image is.
+ */
+final class BandedImage implements RenderedImage {
+
+    /**
+     * Paints the area of the image. The graphics is in the coordinates of the
+     * image and is clipped by the area.
+     */
+    interface Painter {
+
+        void paint(Graphics2D g, Rectangle area);
+    }
+
+    private final int width;
+    private final int height;
+    private final int bandHeight;
+    private final Painter painter;
+    private final ColorModel colorModel;
+    private final SampleModel sampleModel;
+    // -- The last painted band ---------------------------------------------------------
+    private BufferedImage band = null;
+    private int bandIndex = -1;
+
+    BandedImage(int width, int height, int bandHeight, Painter painter) {
+        if (width <= 0 || height <= 0 || bandHeight <= 0) {
+            throw new IllegalArgumentException("Image size has to be positive: " + width + "x" + height + ", band " + bandHeight);
+        }
+        this.width = width;
+        this.height = height;
+        this.bandHeight = Math.min(bandHeight, height);
+        this.painter = painter;
+        BufferedImage prototype = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        colorModel = prototype.getColorModel();
+        sampleModel = colorModel.createCompatibleSampleModel(width, this.bandHeight);
+    }
+
+    /**
+     * @return raster of the band in the coordinates of the image
+     */
+    private Raster band(int index) {
+        if (index != bandIndex) {
+            int top = index * bandHeight;
+            int h = Math.min(bandHeight, height - top);
+            if (band == null || band.getHeight() != h) {
+                band = new BufferedImage(width, h, BufferedImage.TYPE_INT_RGB);
+            }
+            Graphics2D g = band.createGraphics();
+            try {
+                g.translate(0, -top);
+                g.clipRect(0, top, width, h);
+                painter.paint(g, new Rectangle(0, top, width, h));
+            } finally {
+                g.dispose();
+            }
+            bandIndex = index;
+        }
+        return band.getRaster().createTranslatedChild(0, index * bandHeight);
+    }
+
+    @Override
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return java.awt.Image.UndefinedProperty;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return null;
+    }
+
+    @Override
+    public ColorModel getColorModel() {
+        return colorModel;
+    }
+
+    @Override
+    public SampleModel getSampleModel() {
+        return sampleModel;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getMinX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinY() {
+        return 0;
+    }
+
+    @Override
+    public int getNumXTiles() {
+        return 1;
+    }
+
+    @Override
+    public int getNumYTiles() {
+        return (height + bandHeight - 1) / bandHeight;
+    }
+
+    @Override
+    public int getMinTileX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinTileY() {
+        return 0;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return width;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return bandHeight;
+    }
+
+    @Override
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    @Override
+    public int getTileGridYOffset() {
+        return 0;
+    }
+
+    @Override
+    public Raster getTile(int tileX, int tileY) {
+        return band(tileY);
+    }
+
+    /**
+     * Paints the whole image at once, which is what the banded image is
+     * meant to avoid.
+     */
+    @Override
+    public Raster getData() {
+        return getData(new Rectangle(0, 0, width, height));
+    }
+
+    @Override
+    public Raster getData(Rectangle rect) {
+        WritableRaster raster = colorModel.createCompatibleWritableRaster(rect.width, rect.height);
+        return copyData(raster.createWritableTranslatedChild(rect.x, rect.y));
+    }
+
+    @Override
+    public WritableRaster copyData(WritableRaster raster) {
+        if (raster == null) {
+            raster = colorModel.createCompatibleWritableRaster(width, height);
+        }
+        Rectangle area = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+        if (area.isEmpty()) {
+            return raster;
+        }
+        int last = (area.y + area.height - 1) / bandHeight;
+        for (int index = area.y / bandHeight; index <= last; index++) {
+            Raster r = band(index);
+            Rectangle part = area.intersection(r.getBounds());
+            raster.setRect(r.createChild(part.x, part.y, part.width, part.height, part.x, part.y, null));
+        }
+        return raster;
+    }
+}
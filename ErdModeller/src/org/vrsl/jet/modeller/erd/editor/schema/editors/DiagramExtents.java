@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.modeller.erd.editor.schema.editors;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Bounding box of a diagram maintained as extents of its elements change.
+ * The box grows with the elements in constant time; it is recomputed from all
+ * the elements only when an element which has been on its boundary moves
+ * inward or is removed, and then only when the box is asked for.
+ * <p>
+ * An element may extend the box on some of its sides only, the others are
+ * given as {@link #NONE_MIN} and {@link #NONE_MAX}. The box of no elements
+ * has the same sentinel values.
+ */
+final class DiagramExtents<T> {
+
+    static final int NONE_MIN = Integer.MAX_VALUE;
+    static final int NONE_MAX = Integer.MIN_VALUE;
+
+    private final Map<T, Extent> extents = new IdentityHashMap<>();
+    private final Extent box = new Extent();
+    private boolean boxValid = true;
+    private int stamp = 0;
+
+    void clear() {
+        extents.clear();
+        box.reset();
+        boxValid = true;
+    }
+
+    /**
+     * Adds the element or updates its extent.
+     *
+     * @return true if the extent of the element has changed
+     */
+    boolean put(T item, int minX, int minY, int maxX, int maxY) {
+        Extent e = extents.get(item);
+        if (e == null) {
+            e = new Extent();
+            extents.put(item, e);
+        } else if (e.minX == minX && e.minY == minY && e.maxX == maxX && e.maxY == maxY) {
+            e.stamp = stamp;
+            return false;
+        } else if (boxValid && ((e.minX == box.minX && minX > e.minX)
+                || (e.minY == box.minY && minY > e.minY)
+                || (e.maxX == box.maxX && maxX < e.maxX)
+                || (e.maxY == box.maxY && maxY < e.maxY))) {
+            boxValid = false;
+        }
+        e.minX = minX;
+        e.minY = minY;
+        e.maxX = maxX;
+        e.maxY = maxY;
+        e.stamp = stamp;
+        if (boxValid) {
+            box.include(e);
+        }
+        return true;
+    }
+
+    void remove(T item) {
+        Extent e = extents.remove(item);
+        if (e != null && boxValid && e.touches(box)) {
+            boxValid = false;
+        }
+    }
+
+    /**
+     * Starts a pass over all the elements of the diagram, the elements which
+     * are not put during the pass are removed by {@link #endPass()}.
+     */
+    void beginPass() {
+        stamp++;
+    }
+
+    void endPass() {
+        for (Iterator<Extent> it = extents.values().iterator(); it.hasNext();) {
+            Extent e = it.next();
+            if (e.stamp != stamp) {
+                it.remove();
+                if (boxValid && e.touches(box)) {
+                    boxValid = false;
+                }
+            }
+        }
+    }
+
+    int getMinX() {
+        return validBox().minX;
+    }
+
+    int getMinY() {
+        return validBox().minY;
+    }
+
+    int getMaxX() {
+        return validBox().maxX;
+    }
+
+    int getMaxY() {
+        return validBox().maxY;
+    }
+
+    private Extent validBox() {
+        if (!boxValid) {
+            box.reset();
+            for (Extent e : extents.values()) {
+                box.include(e);
+            }
+            boxValid = true;
+        }
+        return box;
+    }
+
+    private static final class Extent {
+
+        private int minX = NONE_MIN;
+        private int minY = NONE_MIN;
+        private int maxX = NONE_MAX;
+        private int maxY = NONE_MAX;
+        private int stamp;
+
+        void reset() {
+            minX = NONE_MIN;
+            minY = NONE_MIN;
+            maxX = NONE_MAX;
+            maxY = NONE_MAX;
+        }
+
+        void include(Extent e) {
+            minX = Math.min(minX, e.minX);
+            minY = Math.min(minY, e.minY);
+            maxX = Math.max(maxX, e.maxX);
+            maxY = Math.max(maxY, e.maxY);
+        }
+
+        /**
+         * @return true if the extent lies on a side of the box
+         */
+        boolean touches(Extent box) {
+            return (minX != NONE_MIN && minX == box.minX)
+                    || (minY != NONE_MIN && minY == box.minY)
+                    || (maxX != NONE_MAX && maxX == box.maxX)
+                    || (maxY != NONE_MAX && maxY == box.maxY);
+        }
+    }
+}
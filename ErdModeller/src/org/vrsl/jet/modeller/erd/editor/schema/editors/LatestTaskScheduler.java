@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.modeller.erd.editor.schema.editors;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.openide.util.Exceptions;
+
+/**
+ * Runs background tasks of all editors one by one on a single thread, in the
+ * order they have been submitted. A task waiting to be run is dropped as soon
+ * as its owner submits a newer task of the same kind, so intermediate states
+ * are never processed. The thread is released when there is nothing to do.
+ */
+final class LatestTaskScheduler {
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<TaskKey, Runnable> latest = new HashMap<>();
+
+    LatestTaskScheduler(final String name) {
+        executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, name);
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues the task superseding the one of the same owner and kind which has
+     * not been started yet.
+     */
+    void submit(Object owner, String kind, final Runnable task) {
+        final TaskKey key = new TaskKey(owner, kind);
+        synchronized (latest) {
+            latest.put(key, task);
+        }
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized (latest) {
+                    if (latest.get(key) != task) {
+                        return;
+                    }
+                    latest.remove(key);
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    Exceptions.printStackTrace(ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops tasks of the owner and kind which have not been started yet.
+     */
+    void cancel(Object owner, String kind) {
+        synchronized (latest) {
+            latest.remove(new TaskKey(owner, kind));
+        }
+    }
+
+    private static final class TaskKey {
+
+        private final Object owner;
+        private final String kind;
+
+        TaskKey(Object owner, String kind) {
+            this.owner = owner;
+            this.kind = kind;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TaskKey)) {
+                return false;
+            }
+            TaskKey k = (TaskKey) obj;
+            return owner == k.owner && kind.equals(k.kind);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(owner) + kind.hashCode();
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.modeller.erd.editor.schema.editors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.text.BadLocationException;
+import org.vrsl.jet.modeller.erd.editor.schema.view.SchemaRectangleElement;
+import org.vrsl.jet.modeller.erd.editor.schema.view.ShemaElement;
+import org.vrsl.jet.modeller.erd.editor.schema.view.associations.CommentAssociation;
+import org.vrsl.jet.modeller.erd.editor.schema.view.associations.ElementsAssociation;
+import org.vrsl.jet.modeller.erd.editor.schema.view.elements.Entity;
+import org.vrsl.jet.models.cim.Qualifier;
+import org.vrsl.jet.models.cim.Schema;
+import org.vrsl.jet.models.cim.persistence.ModelPersistenceException;
+import org.vrsl.jet.models.cim.persistence.ModelWriterFactory;
+import org.vrsl.jet.models.erd.ErdModelFactory;
+
+/**
+ * Text of the schema document split into fragments of the view elements it has
+ * been written from. Every entity, text and association is written as a single
+ * child of the Schema element, so a change of the view can be applied to the
+ * document by rewriting fragments of the added, changed and removed elements
+ * only. The text is the one of the INDENTED_XML writer, fragments are cut out
+ * of its output at the lines where children of the Schema element start.
+ */
+final class SchemaDocumentSync {
+
+    private static final String SCHEMA_NAME = "Test";
+    // -- Lines of the schema children and of the end of the schema, see XmlStreamingWriter
+    private static final String CHILD_START = "\n        <";
+    private static final String SCHEMA_END = "\n    </Schema>";
+    // -- Order of the element kinds in the document ------------------------------------
+    private static final int KIND_ENTITY = 0;
+    private static final int KIND_TEXT = 1;
+    private static final int KIND_ASSOCIATION = 2;
+    private static final int KIND_COMMENT_ASSOCIATION = 3;
+
+    private final String header;
+    private final String footer;
+    private final List<Segment> segments;
+    private final Map<ShemaElement, Segment> index = new IdentityHashMap<>();
+    private final boolean patchable;
+    private int length;
+
+    private SchemaDocumentSync(String header, List<Segment> segments, String footer, boolean patchable) {
+        this.header = header;
+        this.footer = footer;
+        this.segments = segments;
+        this.patchable = patchable;
+        reindex();
+    }
+
+    /**
+     * Builds the schema the same way it is stored: entities, texts,
+     * associations and comment associations in the order they are given.
+     */
+    static Schema buildSchema(Collection<Qualifier<?>> qualifiers, List<? extends ShemaElement> elements) {
+        Schema schema = ErdModelFactory.buildSchema(SCHEMA_NAME);
+        if (qualifiers != null) {
+            for (Qualifier<?> q : qualifiers) {
+                schema.add(q);
+            }
+        }
+        for (ShemaElement e : elements) {
+            e.addTo(schema);
+        }
+        return schema;
+    }
+
+    /**
+     * Writes the schema built from the elements as a whole.
+     */
+    static SchemaDocumentSync render(Schema schema, List<? extends ShemaElement> elements) throws ModelPersistenceException {
+        String text = write(schema);
+        Layout layout = split(text);
+        if (layout == null) {
+            // -- Schema written as an empty element, there is nothing to patch in ---------
+            return new SchemaDocumentSync(text, new ArrayList<Segment>(), "", false);
+        }
+        // -- Schema qualifiers stay in the header, elements make segments -------------
+        boolean patchable = layout.children.size() == elements.size();
+        List<Segment> segments = new ArrayList<>(layout.children.size());
+        for (int i = 0; i < layout.children.size(); i++) {
+            ShemaElement e = patchable ? elements.get(i) : null;
+            segments.add(new Segment(e, patchable ? kindOf(e) : KIND_ENTITY, layout.children.get(i)));
+        }
+        return new SchemaDocumentSync(layout.header, segments, layout.footer, patchable);
+    }
+
+    String getText() {
+        StringBuilder sb = new StringBuilder(length);
+        sb.append(header);
+        for (Segment s : segments) {
+            sb.append(s.text);
+        }
+        sb.append(footer);
+        return sb.toString();
+    }
+
+    boolean isPatchable() {
+        return patchable;
+    }
+
+    /**
+     * Brings the document in line with the elements. Fragments are written for
+     * the added elements and the changed ones, fragments of the elements which
+     * are not in the list anymore are removed.
+     *
+     * @return false if the document doesn't hold the text written last time
+     */
+    boolean patch(javax.swing.text.Document document, List<? extends ShemaElement> elements, Set<ShemaElement> changed)
+            throws ModelPersistenceException, BadLocationException {
+        if (!patchable || document.getLength() != length) {
+            return false;
+        }
+        // -- Finding out what has to be written ---------------------------------------
+        Set<ShemaElement> present = Collections.newSetFromMap(new IdentityHashMap<ShemaElement, Boolean>());
+        List<ShemaElement> rendered = new ArrayList<>();
+        for (ShemaElement e : elements) {
+            present.add(e);
+            if (!index.containsKey(e) || changed.contains(e)) {
+                rendered.add(e);
+            }
+        }
+        List<Segment> removed = new ArrayList<>();
+        for (Segment s : segments) {
+            if (!present.contains(s.element)) {
+                removed.add(s);
+            }
+        }
+        if (rendered.isEmpty() && removed.isEmpty()) {
+            return true;
+        }
+        Map<ShemaElement, String> fragments = renderFragments(rendered);
+        if (fragments == null) {
+            return false;
+        }
+        // -- Planning edits against the current text ----------------------------------
+        List<Edit> edits = new ArrayList<>();
+        List<Segment> result = new ArrayList<>(segments.size() + rendered.size());
+        List<List<Segment>> added = new ArrayList<>();
+        for (int k = KIND_ENTITY; k <= KIND_COMMENT_ASSOCIATION; k++) {
+            added.add(new ArrayList<Segment>());
+        }
+        for (ShemaElement e : rendered) {
+            if (!index.containsKey(e)) {
+                added.get(kindOf(e)).add(new Segment(e, kindOf(e), fragments.get(e)));
+            }
+        }
+        int offset = header.length();
+        int kind = KIND_ENTITY;
+        for (Segment s : segments) {
+            // -- New elements go after the last element of the same kind --------------
+            while (kind < s.kind) {
+                offset = insert(edits, result, added.get(kind), offset);
+                kind++;
+            }
+            if (!present.contains(s.element)) {
+                edits.add(new Edit(offset, s.text.length(), ""));
+            } else if (fragments.containsKey(s.element) && !fragments.get(s.element).equals(s.text)) {
+                String text = fragments.get(s.element);
+                edits.add(new Edit(offset, s.text.length(), text));
+                result.add(new Segment(s.element, s.kind, text));
+            } else {
+                result.add(s);
+            }
+            offset += s.text.length();
+        }
+        while (kind <= KIND_COMMENT_ASSOCIATION) {
+            offset = insert(edits, result, added.get(kind), offset);
+            kind++;
+        }
+        // -- Edits are applied from the end, so offsets of the others stay valid -------
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            Edit ed = edits.get(i);
+            if (ed.length > 0) {
+                document.remove(ed.offset, ed.length);
+            }
+            if (!ed.text.isEmpty()) {
+                document.insertString(ed.offset, ed.text, null);
+            }
+        }
+        segments.clear();
+        segments.addAll(result);
+        reindex();
+        return true;
+    }
+
+    private static int insert(List<Edit> edits, List<Segment> result, List<Segment> added, int offset) {
+        if (added.isEmpty()) {
+            return offset;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Segment s : added) {
+            sb.append(s.text);
+            result.add(s);
+        }
+        edits.add(new Edit(offset, 0, sb.toString()));
+        return offset;
+    }
+
+    /**
+     * Writes a small schema with the given elements and the ones their
+     * associations refer to, and cuts fragments of the given elements out of it.
+     *
+     * @return null if the written schema doesn't match the elements
+     */
+    private static Map<ShemaElement, String> renderFragments(List<ShemaElement> rendered) throws ModelPersistenceException {
+        Schema schema = ErdModelFactory.buildSchema(SCHEMA_NAME);
+        Set<ShemaElement> written = Collections.newSetFromMap(new IdentityHashMap<ShemaElement, Boolean>());
+        List<ShemaElement> order = new ArrayList<>();
+        // -- Associations are written by names of the elements they join ---------------
+        for (ShemaElement e : rendered) {
+            if (e instanceof ElementsAssociation) {
+                ElementsAssociation a = (ElementsAssociation) e;
+                for (ShemaElement end : new ShemaElement[]{a.getFromObject(), a.getToObject()}) {
+                    if (written.add(end)) {
+                        end.addTo(schema);
+                        order.add(end);
+                    }
+                }
+            }
+        }
+        for (ShemaElement e : rendered) {
+            if (written.add(e)) {
+                e.addTo(schema);
+                order.add(e);
+            }
+        }
+        Layout layout = split(write(schema));
+        if (layout == null || layout.children.size() != order.size()) {
+            return null;
+        }
+        Map<ShemaElement, String> res = new IdentityHashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            res.put(order.get(i), layout.children.get(i));
+        }
+        return res;
+    }
+
+    private static String write(Schema schema) throws ModelPersistenceException {
+        try (ByteArrayOutputStream sysOut = new ByteArrayOutputStream()) {
+            ModelWriterFactory.newInstance(ModelWriterFactory.Engine.INDENTED_XML).write(sysOut, schema);
+            return sysOut.toString("UTF-8");
+        } catch (IOException ex) {
+            throw new ModelPersistenceException(ex);
+        }
+    }
+
+    /**
+     * Cuts the text into the header with the schema qualifiers, texts of the
+     * Class and Association children of the schema and the footer. Markup is
+     * escaped in the texts of qualifiers, so a line starting with a tag at the
+     * level of the schema children is always one of them.
+     *
+     * @return null if the schema has been written as an empty element
+     */
+    private static Layout split(String text) {
+        int end = text.lastIndexOf(SCHEMA_END);
+        if (end < 0) {
+            return null;
+        }
+        // -- Fragments are whole lines, they start after the line end ------------------
+        end++;
+        Layout layout = new Layout();
+        int start = -1;
+        for (int i = text.indexOf(CHILD_START); i >= 0 && i < end; i = text.indexOf(CHILD_START, i + 1)) {
+            int tag = i + CHILD_START.length();
+            if (!isTag(text, tag, "Class") && !isTag(text, tag, "Association")) {
+                continue;
+            }
+            if (start < 0) {
+                layout.header = text.substring(0, i + 1);
+            } else {
+                layout.children.add(text.substring(start, i + 1));
+            }
+            start = i + 1;
+        }
+        if (start < 0) {
+            layout.header = text.substring(0, end);
+        } else {
+            layout.children.add(text.substring(start, end));
+        }
+        layout.footer = text.substring(end);
+        return layout;
+    }
+
+    private static boolean isTag(String text, int offset, String name) {
+        int end = offset + name.length();
+        if (!text.startsWith(name, offset) || end >= text.length()) {
+            return false;
+        }
+        char ch = text.charAt(end);
+        return ch == ' ' || ch == '>' || ch == '/';
+    }
+
+    private static int kindOf(ShemaElement e) {
+        if (e instanceof CommentAssociation) {
+            return KIND_COMMENT_ASSOCIATION;
+        }
+        if (e instanceof ElementsAssociation) {
+            return KIND_ASSOCIATION;
+        }
+        if (e instanceof Entity) {
+            return KIND_ENTITY;
+        }
+        if (e instanceof SchemaRectangleElement) {
+            return KIND_TEXT;
+        }
+        throw new IllegalArgumentException("Unknown schema element " + e.getClass().getName());
+    }
+
+    private void reindex() {
+        index.clear();
+        length = header.length() + footer.length();
+        for (Segment s : segments) {
+            if (s.element != null) {
+                index.put(s.element, s);
+            }
+            length += s.text.length();
+        }
+    }
+
+    private static final class Layout {
+
+        private String header;
+        private final List<String> children = new ArrayList<>();
+        private String footer;
+    }
+
+    private static final class Segment {
+
+        private final ShemaElement element;
+        private final int kind;
+        private final String text;
+
+        Segment(ShemaElement element, int kind, String text) {
+            this.element = element;
+            this.kind = kind;
+            this.text = text;
+        }
+    }
+
+    private static final class Edit {
+
+        private final int offset;
+        private final int length;
+        private final String text;
+
+        Edit(int offset, int length, String text) {
+            this.offset = offset;
+            this.length = length;
+            this.text = text;
+        }
+    }
+}
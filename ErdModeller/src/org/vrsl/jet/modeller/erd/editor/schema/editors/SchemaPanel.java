@@ -23,8 +23,6 @@
  */
 package org.vrsl.jet.modeller.erd.editor.schema.editors;
 
-import com.sun.org.apache.xml.internal.serialize.OutputFormat;
-import com.sun.org.apache.xml.internal.serialize.XMLSerializer;
 import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
@@ -51,41 +49,47 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
-import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.swing.text.StyledDocument;
 import org.openide.cookies.EditorCookie;
 import org.openide.loaders.MultiDataObject;
+import org.openide.text.NbDocument;
 import org.openide.util.Exceptions;
 import org.vrsl.jet.modeller.erd.ActionsController;
 import org.vrsl.jet.modeller.erd.editor.schema.dialogs.AssociationDialog;
 import org.vrsl.jet.modeller.erd.editor.schema.dialogs.SchemaTextDialog;
 import org.vrsl.jet.modeller.erd.editor.schema.view.SchamaClass;
 import org.vrsl.jet.modeller.erd.editor.schema.view.SchemaRectangleElement;
+import org.vrsl.jet.modeller.erd.editor.schema.view.ShemaElement;
+import org.vrsl.jet.modeller.erd.editor.schema.view.associations.AssociationsBuilder;
 import org.vrsl.jet.modeller.erd.editor.schema.view.associations.CommentAssociation;
 import org.vrsl.jet.modeller.erd.editor.schema.view.associations.ElementsAssociation;
 import org.vrsl.jet.modeller.erd.editor.schema.view.elements.Comment;
@@ -115,11 +119,8 @@ import org.vrsl.jet.translators.AbstractCimTranslator;
 import org.vrsl.jet.translators.CimTranslatorError;
 import org.vrsl.jet.translators.TranslatorsRepository;
 import org.vrsl.jet.translators.ValidationResult;
-import org.vrsl.jet.translators.properties.TranslatorPropertyMetadata;
+import org.vrsl.jet.translators.erd.SchemaTranslatorProperties;
 import org.vrsl.jet.ui.dialogs.PropertiesDialog;
-import org.w3c.dom.Document;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 public class SchemaPanel extends JPanel implements MouseListener, ActionListener, MouseMotionListener {
 
@@ -166,7 +167,7 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
     private double scale = 1;
     // -------------------------------------------------------------------------------
     private MultiDataObject dataObject = null;
-    private javax.swing.text.Document document = null;
+    private StyledDocument document = null;
     private volatile boolean blockRebuild = false;
     // -------------------------------------------------------------------------------
     private JFrame appFrame = null;
@@ -191,7 +192,50 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
     private String translatorName = "UNKNOWN";
     private boolean setDirtyAfterMouseDrag = false;
     // -------------------------------------------------------------------------------
-    private final ExecutorService longRuningTasks = Executors.newFixedThreadPool(8);
+    // -- Background work shared by all editors, the latest task of a kind wins -------
+    private static final LatestTaskScheduler documentTasks = new LatestTaskScheduler("Schema document tasks");
+    private static final LatestTaskScheduler translationTasks = new LatestTaskScheduler("Schema translation tasks");
+    private static final String REBUILD_TASK = "rebuild";
+    private static final String WRITE_TASK = "write";
+    private static final String TRANSLATE_TASK = "translate";
+    // -- Coalescing rebuild of the view after document changes ----------------------
+    private static final int REBUILD_DELAY = 250;
+    private final AtomicLong rebuildGeneration = new AtomicLong();
+    private final Timer rebuildTimer = new Timer(REBUILD_DELAY, new ActionListener() {
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            startRebuild();
+        }
+    });
+    // -- Candidates for hit testing and painting, rebuilt lazily after changes -------
+    private static final int HIT_CELL_SIZE = 128;
+    private static final int HIT_MARGIN = 2;
+    private static final int CLIP_MARGIN = 2;
+    private final SpatialIndex<Entity> entityIndex = new SpatialIndex<>(HIT_CELL_SIZE);
+    private final SpatialIndex<SchemaRectangleElement> textIndex = new SpatialIndex<>(HIT_CELL_SIZE);
+    private final SpatialIndex<ElementsAssociation> associationIndex = new SpatialIndex<>(HIT_CELL_SIZE);
+    private final SpatialIndex<CommentAssociation> commentAssociationIndex = new SpatialIndex<>(HIT_CELL_SIZE);
+    private boolean hitIndexValid = false;
+    private List<Entity> hoveredEntities = Collections.emptyList();
+    private List<SchemaRectangleElement> hoveredTexts = Collections.emptyList();
+    private List<ElementsAssociation> hoveredAssociations = Collections.emptyList();
+    private List<CommentAssociation> hoveredCommentAssociations = Collections.emptyList();
+    // -- Bounding box of the schema, kept up to date as elements change --------------
+    private final DiagramExtents<ShemaElement> extents = new DiagramExtents<>();
+    // -- Rows of an exported image painted at once ------------------------------------
+    private static final int EXPORT_BAND_HEIGHT = 256;
+    // -- Static part of the schema while elements are dragged ------------------------
+    private DragLayer dragLayer = null;
+    private Set<ShemaElement> dragged = null;
+    // -- Document text written from the view, patched for changed elements only ------
+    private volatile SchemaDocumentSync documentSync = null;
+    // -- Thread writing the view into the document, its changes keep the sync ---------
+    private volatile Thread documentWriter = null;
+    private final AtomicLong syncGeneration = new AtomicLong();
+    // -- Qualifiers of the schema read last from the document, written back with the view
+    private volatile List<Qualifier<?>> schemaQualifiers = null;
+    private final Set<ShemaElement> changedElements = Collections.newSetFromMap(new IdentityHashMap<ShemaElement, Boolean>());
 
     /**
      * Creates a new instance of ShemaPanel
@@ -214,6 +258,7 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
 
         sysFont = new Font("Areal", Font.PLAIN, 12);
 
+        rebuildTimer.setRepeats(false);
         initEditorDocument(obj);
         initDocumentView();
     }
@@ -241,17 +286,17 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
             document.addDocumentListener(new DocumentListener() {
                 @Override
                 public void insertUpdate(DocumentEvent e) {
-                    build();
+                    documentChanged();
                 }
 
                 @Override
                 public void removeUpdate(DocumentEvent e) {
-                    build();
+                    documentChanged();
                 }
 
                 @Override
                 public void changedUpdate(DocumentEvent e) {
-                    build();
+                    documentChanged();
                 }
             });
         }
@@ -266,25 +311,121 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
         if (blockRebuild) {
             return;
         }
-        Schema s;
         try {
-            String content = document.getText(0, document.getLength());
-            try (InputStream sysIn = new ByteArrayInputStream(content.getBytes())) {
-                ModelReader r = ModelReaderFactory.newInstance(new ErdVariantsFactory());
-                s = r.read(sysIn);
-                buildViewRepresentation(s);
-                blocked = false;
-            }
-        } catch (ModelPersistenceException | NamedElementNotFoundException | IOException | IllegalStateException | NumberFormatException | BadLocationException ex) {
-            blocked = true;
-        } finally {
-            try {
-                repaint();
-            } catch (Throwable e) {
+            applyViewRepresentation(readViewRepresentation(document.getText(0, document.getLength())));
+        } catch (BadLocationException ex) {
+            applyViewRepresentation(null);
+        }
+    }
+
+    private void documentChanged() {
+        // -- Text written by somebody else can't be patched anymore -------------------
+        if (Thread.currentThread() != documentWriter) {
+            invalidateSync();
+        }
+        scheduleRebuild();
+    }
+
+    /**
+     * Restarts the rebuild delay, so a burst of document changes results in a
+     * single rebuild. Can be called from any thread.
+     */
+    private void scheduleRebuild() {
+        if (blockRebuild) {
+            return;
+        }
+        // -- Results of rebuilds in progress are outdated now ---------------------------
+        rebuildGeneration.incrementAndGet();
+        if (SwingUtilities.isEventDispatchThread()) {
+            rebuildTimer.restart();
+        } else {
+            SwingUtilities.invokeLater(new Runnable() {
+
+                @Override
+                public void run() {
+                    rebuildTimer.restart();
+                }
+            });
+        }
+    }
+
+    private void startRebuild() {
+        if (blockRebuild) {
+            return;
+        }
+        final long generation = rebuildGeneration.get();
+        final String content;
+        try {
+            content = document.getText(0, document.getLength());
+        } catch (BadLocationException ex) {
+            applyViewRepresentation(null);
+            return;
+        }
+        // -- Parsing in background, the view is replaced only if nothing changed since --
+        documentTasks.submit(this, REBUILD_TASK, new Runnable() {
+
+            @Override
+            public void run() {
+                final SchemaView view = readViewRepresentation(content);
+                SwingUtilities.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (generation == rebuildGeneration.get() && !blockRebuild) {
+                            applyViewRepresentation(view);
+                        }
+                    }
+                });
             }
+        });
+    }
+
+    /**
+     * @return view elements of the schema or null if the content can't be read
+     */
+    private SchemaView readViewRepresentation(String content) {
+        try (InputStream sysIn = new ByteArrayInputStream(content.getBytes())) {
+            ModelReader r = ModelReaderFactory.newInstance(new ErdVariantsFactory());
+            return buildViewRepresentation(r.read(sysIn));
+        } catch (ModelPersistenceException | NamedElementNotFoundException | IOException | IllegalStateException | NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private void applyViewRepresentation(SchemaView view) {
+        if (view != null) {
+            data = view.data;
+            associations = view.associations;
+            texts = view.texts;
+            commentAssociations = view.commentAssociations;
+            schemaQualifiers = view.qualifiers;
+            invalidateHitIndex();
+            extents.clear();
+            updateExtents();
+            dragLayer = null;
+            changedElements.clear();
+            blocked = false;
+        } else {
+            blocked = true;
+        }
+        try {
+            repaint();
+        } catch (Throwable e) {
         }
     }
 
+    /**
+     * Drops pending background work of the editor when it is closed. Writes of
+     * the document are completed, so the last changes are not lost.
+     */
+    public void close() {
+        rebuildTimer.stop();
+        rebuildGeneration.incrementAndGet();
+        documentTasks.cancel(this, REBUILD_TASK);
+        translationTasks.cancel(this, TRANSLATE_TASK);
+        dragLayer = null;
+    }
+
     public boolean isDirty() {
         return dirty;
     }
@@ -295,6 +436,7 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
 
     public void setScale(double scale) {
         this.scale = scale;
+        dragLayer = null;
         for (Entity d : data) {
             d.setScale(scale);
         }
@@ -417,63 +559,241 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
             return;
         }
 
-        int width = getMaxWidth();
-        int height = getMaxHeight();
-
         Rectangle b = this.getBounds();
         g.clearRect(0, 0, b.width, b.height);
 
         Graphics2D g2d = (Graphics2D) g;
+        if (isDragLayerUsable(g2d.getClipBounds())) {
+            g2d.drawImage(dragLayer.image, dragLayer.area.x, dragLayer.area.y, null);
+            paintSchema(g2d, dragLayer);
+        } else {
+            paintSchema(g2d, null);
+        }
+
+        if (regionSelection) {
+            drawGroupSelection(g2d);
+        }
+        if (blocked) {
+            Color pColor = g2d.getColor();
+            g2d.setColor(Color.LIGHT_GRAY);
+            g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f));
+            g2d.fillRect(0, 0, (int) (getMaxWidth() / scale), (int) (getMaxHeight() / scale));
+            g2d.setColor(pColor);
+        }
+    }
+
+    /**
+     * Draws the schema scaled. Without a drag layer all the elements within
+     * the clip are drawn, otherwise only the dragged ones.
+     */
+    private void paintSchema(Graphics2D g2d, DragLayer layer) {
+        Graphics g = g2d;
+        Rectangle b = this.getBounds();
+
         g2d.scale(scale, scale);
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setFont(sysFont);
+
+        if (layer != null) {
+            for (Entity jd : layer.data) {
+                jd.calculateBoxMetrics(g);
+            }
+            for (SchemaRectangleElement jd : layer.texts) {
+                jd.calculateBoxMetrics(g);
+            }
+            for (ElementsAssociation ld : layer.associations) {
+                ld.draw(g);
+            }
+            for (CommentAssociation ld : layer.commentAssociations) {
+                ld.draw(g);
+            }
+            for (Entity jd : layer.data) {
+                jd.draw(g);
+            }
+            for (SchemaRectangleElement jd : layer.texts) {
+                jd.draw(g);
+            }
+            return;
+        }
+
+        // -- Only the elements within the clip are measured and drawn -------------------
+        Rectangle clip = g2d.getClipBounds();
+        if (clip != null) {
+            clip.grow(CLIP_MARGIN, CLIP_MARGIN);
+        }
 
         {
-            int rectWidth = width > b.width ? width : b.width;
-            int rectHeight = height > b.height ? height : b.height;
             Color pColor = g.getColor();
             g.setColor(Color.WHITE);
-            g.fillRect(0, 0, (int) (rectWidth / scale), (int) (rectHeight / scale));
+            if (clip != null) {
+                g.fillRect(clip.x, clip.y, clip.width, clip.height);
+            } else {
+                int width = getMaxWidth();
+                int height = getMaxHeight();
+                int rectWidth = width > b.width ? width : b.width;
+                int rectHeight = height > b.height ? height : b.height;
+                g.fillRect(0, 0, (int) (rectWidth / scale), (int) (rectHeight / scale));
+            }
             g.setColor(pColor);
         }
 
-        g.setFont(sysFont);
-
-        for (Entity jd : data) {
-            jd.calculateBoxMetrics(g);
+        // -- Sizes are unknown after changes, so the whole schema is measured once ------
+        boolean measured = !hitIndexValid;
+        if (measured) {
+            for (Entity jd : data) {
+                jd.calculateBoxMetrics(g);
+            }
+            for (SchemaRectangleElement jd : texts) {
+                jd.calculateBoxMetrics(g);
+            }
+            validateHitIndex();
+            updateExtents();
         }
-        for (SchemaRectangleElement jd : texts) {
-            jd.calculateBoxMetrics(g);
+        List<Entity> shownData = clip == null ? data : entityIndex.query(clip);
+        List<SchemaRectangleElement> shownTexts = clip == null ? texts : textIndex.query(clip);
+        List<ElementsAssociation> shownAssociations = clip == null ? associations : associationIndex.query(clip);
+        List<CommentAssociation> shownCommentAssociations = clip == null ? commentAssociations : commentAssociationIndex.query(clip);
+        // -- Dragged elements are not a part of the drag layer --------------------------
+        if (dragged != null) {
+            shownData = withoutDragged(shownData);
+            shownTexts = withoutDragged(shownTexts);
+            shownAssociations = withoutDragged(shownAssociations);
+            shownCommentAssociations = withoutDragged(shownCommentAssociations);
         }
 
-        for (ElementsAssociation ld : associations) {
+        if (!measured) {
+            for (Entity jd : shownData) {
+                jd.calculateBoxMetrics(g);
+                entityIndex.put(jd, boundsOf(jd));
+                updateExtents(jd);
+            }
+            for (SchemaRectangleElement jd : shownTexts) {
+                jd.calculateBoxMetrics(g);
+                textIndex.put(jd, boundsOf(jd));
+                updateExtents(jd);
+            }
+        }
+
+        // -- Association marks are known after drawing, so does the index --------------
+        for (ElementsAssociation ld : shownAssociations) {
             ld.draw(g);
+            associationIndex.put(ld, ld.getBounds());
         }
-        for (CommentAssociation ld : commentAssociations) {
+        for (CommentAssociation ld : shownCommentAssociations) {
             ld.draw(g);
+            commentAssociationIndex.put(ld, ld.getBounds());
         }
 
         ////////////////////////////////////////////////////////
         // And the last step is drawing objects
-        for (Entity jd : data) {
+        for (Entity jd : shownData) {
             jd.draw(g);
         }
 
         ////////////////////////////////////////////////////////
         // After all we draw texts
-        for (SchemaRectangleElement jd : texts) {
+        for (SchemaRectangleElement jd : shownTexts) {
             jd.draw(g);
         }
+    }
 
-        if (regionSelection) {
-            drawGroupSelection(g2d);
+    // -- Drag layer --------------------------------------------------------------------
+    /**
+     * Renders everything but the dragged elements into an image of the visible
+     * part of the panel. Painting while dragging just copies the image and
+     * draws the dragged elements over it.
+     */
+    private void startDragLayer() {
+        if (dragLayer != null || blocked) {
+            return;
         }
-        if (blocked) {
-            Color pColor = g2d.getColor();
-            g2d.setColor(Color.LIGHT_GRAY);
-            g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f));
-            g2d.fillRect(0, 0, (int) (width / scale), (int) (height / scale));
-            g2d.setColor(pColor);
+        Rectangle area = getVisibleRect();
+        if (area.isEmpty()) {
+            return;
         }
+        DragLayer layer = new DragLayer(area, scale);
+        collectMoved(layer.data, layer.texts, layer.associations, layer.commentAssociations);
+        layer.moved.addAll(layer.data);
+        layer.moved.addAll(layer.texts);
+        layer.moved.addAll(layer.associations);
+        layer.moved.addAll(layer.commentAssociations);
+        // -- Rendering the rest of the schema -------------------------------------------
+        Graphics2D ig = layer.image.createGraphics();
+        try {
+            ig.setColor(getBackground());
+            ig.fillRect(0, 0, area.width, area.height);
+            ig.translate(-area.x, -area.y);
+            ig.setClip(area);
+            ig.setColor(getForeground());
+            dragged = layer.moved;
+            paintSchema(ig, null);
+        } finally {
+            dragged = null;
+            ig.dispose();
+        }
+        dragLayer = layer;
+    }
+
+    /**
+     * Collects elements being dragged and associations attached to them.
+     */
+    private void collectMoved(List<Entity> movedData, List<SchemaRectangleElement> movedTexts,
+            List<ElementsAssociation> movedAssociations, List<CommentAssociation> movedCommentAssociations) {
+        if (movedObject != null && regionSelected) {
+            for (Entity e : data) {
+                if (e.isSelected()) {
+                    movedData.add(e);
+                }
+            }
+            for (SchemaRectangleElement t : texts) {
+                if (t.isSelected()) {
+                    movedTexts.add(t);
+                }
+            }
+        } else if (movedObject instanceof Entity) {
+            movedData.add((Entity) movedObject);
+        } else if (movedObject != null) {
+            movedTexts.add(movedObject);
+        }
+        Set<ShemaElement> moved = Collections.newSetFromMap(new IdentityHashMap<ShemaElement, Boolean>());
+        moved.addAll(movedData);
+        moved.addAll(movedTexts);
+        for (ElementsAssociation a : associations) {
+            if (a == movedAssociation || (a.isSelected() && regionSelected)
+                    || moved.contains(a.getFromObject()) || moved.contains(a.getToObject())) {
+                movedAssociations.add(a);
+            }
+        }
+        for (CommentAssociation a : commentAssociations) {
+            if (a == comMovedAssociation || (a.isSelected() && regionSelected)
+                    || moved.contains(a.getFromObject()) || moved.contains(a.getToObject())) {
+                movedCommentAssociations.add(a);
+            }
+        }
+    }
+
+    private void stopDragLayer() {
+        if (dragLayer != null) {
+            dragLayer = null;
+            repaint();
+        }
+    }
+
+    private boolean isDragLayerUsable(Rectangle clip) {
+        return dragLayer != null
+                && dragLayer.scale == scale
+                && clip != null
+                && dragLayer.area.contains(clip);
+    }
+
+    private <T extends ShemaElement> List<T> withoutDragged(List<T> elements) {
+        List<T> res = new ArrayList<>(elements.size());
+        for (T e : elements) {
+            if (!dragged.contains(e)) {
+                res.add(e);
+            }
+        }
+        return res;
     }
 
     private void drawGroupSelection(Graphics2D g2d) {
@@ -544,7 +864,9 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
     public void deleteEntityObject(MouseEvent ev) {
         boolean removalHasDetected = false;
         Entity ro = null;
-        for (Entity jd : data) {
+        validateHitIndex();
+        Rectangle area = hitArea(ev);
+        for (Entity jd : entityIndex.query(area)) {
             if (jd.isAssociationAreaRelated(ev)) {
 
                 if (jd.isReadyToBeDeleted()) {
@@ -582,21 +904,21 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
             CommentAssociation rcCommentAssociation = null;
             SchemaRectangleElement rcText = null;
             // ----------------------------------------------------------------------------------------------
-            for (ElementsAssociation lk : associations) {
+            for (ElementsAssociation lk : associationIndex.query(area)) {
                 if (lk.processMouseDelete(ev)) {
                     rcAssociation = lk;
                     removalHasDetected = true;
                     break;
                 }
             }
-            for (CommentAssociation lk : commentAssociations) {
+            for (CommentAssociation lk : commentAssociationIndex.query(area)) {
                 if (lk.processMouseDelete(ev)) {
                     rcCommentAssociation = lk;
                     removalHasDetected = true;
                     break;
                 }
             }
-            for (SchemaRectangleElement tx : texts) {
+            for (SchemaRectangleElement tx : textIndex.query(area)) {
                 if (tx.isOwnedAreaRelated(ev)) {
 
                     Collection<ElementsAssociation> removalCandidates = new LinkedList<>();
@@ -631,7 +953,8 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
     }
 
     private void addAssociation(MouseEvent ev) {
-        for (Entity jd : data) {
+        validateHitIndex();
+        for (Entity jd : entityIndex.query(hitArea(ev))) {
             if (jd.isAssociationAreaRelated(ev)) {
                 if (jd.setAssociationSelected(true)) {
                     switch (associationStage) {
@@ -712,7 +1035,9 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
     }
 
     private void addCommentAssociation(MouseEvent ev) {
-        for (SchamaClass jd : data) {
+        validateHitIndex();
+        Rectangle area = hitArea(ev);
+        for (SchamaClass jd : entityIndex.query(area)) {
             if (jd.isAssociationAreaRelated(ev)) {
                 if (jd.setAssociationSelected(true)) {
                     switch (associationStage) {
@@ -730,7 +1055,7 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
                 break;
             }
         }
-        for (SchemaRectangleElement jd : texts) {
+        for (SchemaRectangleElement jd : textIndex.query(area)) {
             if (jd.isAssociationAreaRelated(ev)) {
                 if (jd.setAssociationSelected(true)) {
                     switch (associationStage) {
@@ -821,9 +1146,12 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
         } else if (mode == EditorMode.ADD_NEW_COMMENT_ASSOCIATION) {
             addCommentAssociation(ev);
         } else {
-            for (Entity jd : data) {
+            validateHitIndex();
+            Rectangle area = hitArea(ev);
+            for (Entity jd : entityIndex.query(area)) {
                 if (jd.processMouseEvent(appFrame, ev)) {
                     if (jd.isDirty()) {
+                        markChanged(jd);
                         setDirty(true);
                     }
                     jd.setDefaultView();
@@ -831,9 +1159,11 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
                     return;
                 }
             }
-            for (ElementsAssociation lk : associations) {
+            // -- Group selected associations react on a click anywhere -------------------
+            for (ElementsAssociation lk : regionSelected ? associations : associationIndex.query(area)) {
                 if (lk.processMouseEvent(appFrame, ev)) {
                     if (lk.isDirty()) {
+                        markChanged(lk);
                         setDirty(true);
                     }
                     lk.setDefaultView();
@@ -841,9 +1171,10 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
                     return;
                 }
             }
-            for (SchemaRectangleElement lk : texts) {
+            for (SchemaRectangleElement lk : textIndex.query(area)) {
                 if (lk.processMouseEvent(appFrame, ev)) {
                     if (lk.isDirty()) {
+                        markChanged(lk);
                         setDirty(true);
                     }
                     lk.setDefaultView();
@@ -864,7 +1195,9 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
 
         boolean isBlank = true;
 
-        for (Entity dt : data) {
+        validateHitIndex();
+        Rectangle area = hitArea(ev);
+        for (Entity dt : entityIndex.query(area)) {
             if (dt.isMovingAreaRelated(ev)) {
                 movedObject = dt;
                 dt.setMoved();
@@ -872,7 +1205,7 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
                 break;
             }
         }
-        for (SchemaRectangleElement dt : texts) {
+        for (SchemaRectangleElement dt : textIndex.query(area)) {
             if (dt.isMovingAreaRelated(ev)) {
                 movedObject = dt;
                 dt.setMoved();
@@ -880,14 +1213,14 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
                 break;
             }
         }
-        for (ElementsAssociation lt : associations) {
+        for (ElementsAssociation lt : associationIndex.query(area)) {
             if (lt.processMouseStartDragging(ev.getPoint())) {
                 movedAssociation = lt;
                 isBlank = false;
                 break;
             }
         }
-        for (CommentAssociation lt : commentAssociations) {
+        for (CommentAssociation lt : commentAssociationIndex.query(area)) {
             if (lt.processMouseStartDragging(ev.getPoint())) {
                 comMovedAssociation = lt;
                 isBlank = false;
@@ -904,6 +1237,10 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
     public void mouseReleased(MouseEvent ev) {
         stPosX = 0;
         stPosY = 0;
+        if (setDirtyAfterMouseDrag) {
+            markMoved();
+        }
+        stopDragLayer();
         if (movedObject != null) {
             movedObject.setDefaultView();
             movedObject = null;
@@ -940,9 +1277,14 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
     public void mouseDragged(MouseEvent ev) {
         int moveX = (int) (ev.getX() / scale) - stPosX;
         int moveY = (int) (ev.getY() / scale) - stPosY;
+        if (movedObject != null || movedAssociation != null || comMovedAssociation != null) {
+            startDragLayer();
+        }
         if (movedObject != null) {
             if (!regionSelected) {
                 movedObject.shift(moveX, moveY);
+                updateHitIndex(movedObject);
+                updateExtents(movedObject);
                 repaint();
                 //setDirty(true);
                 setDirtyAfterMouseDrag = true;
@@ -952,12 +1294,19 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
         }
         if (movedAssociation != null) {
             movedAssociation.processMouseDragged(new Point((int) (ev.getX() / scale), (int) (ev.getY() / scale)));
+            if (hitIndexValid) {
+                associationIndex.put(movedAssociation, movedAssociation.getBounds());
+            }
+            putExtent(movedAssociation);
             repaint();
             //setDirty(true);
             setDirtyAfterMouseDrag = true;
         }
         if (comMovedAssociation != null) {
             comMovedAssociation.processMouseDragged(new Point((int) (ev.getX() / scale), (int) (ev.getY() / scale)));
+            if (hitIndexValid) {
+                commentAssociationIndex.put(comMovedAssociation, comMovedAssociation.getBounds());
+            }
             repaint();
             //setDirty(true);
             setDirtyAfterMouseDrag = true;
@@ -977,7 +1326,18 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
         boolean isChanged = false;
         setCursorMode();
         boolean hasToolTip = false;
-        for (Entity dt : data) {
+        // -- Only the elements under the mouse and the ones pointed before are checked ---
+        validateHitIndex();
+        Rectangle area = hitArea(ev);
+        List<Entity> entities = entityIndex.query(area, hoveredEntities);
+        List<ElementsAssociation> elementsAssociations = associationIndex.query(area, hoveredAssociations);
+        List<CommentAssociation> textsAssociations = commentAssociationIndex.query(area, hoveredCommentAssociations);
+        List<SchemaRectangleElement> schemaTexts = textIndex.query(area, hoveredTexts);
+        hoveredEntities = entityIndex.query(area);
+        hoveredAssociations = associationIndex.query(area);
+        hoveredCommentAssociations = commentAssociationIndex.query(area);
+        hoveredTexts = textIndex.query(area);
+        for (Entity dt : entities) {
             if (mode != EditorMode.DELETE_OBJECTS) {
                 // -- Objects movement logic --------------------------------------------------------
                 if (dt.isMovingAreaRelated(ev)) {
@@ -1023,7 +1383,7 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
         }
 
         if (associations != null && !regionSelected) {
-            for (ElementsAssociation lk : associations) {
+            for (ElementsAssociation lk : elementsAssociations) {
                 if (lk.processMouseDelete(ev)) {
                     if (mode == EditorMode.DELETE_OBJECTS) {
                         lk.setReadyToBeDeleted();
@@ -1039,7 +1399,7 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
             }
         }
         if (commentAssociations != null && !regionSelected) {
-            for (ElementsAssociation lk : commentAssociations) {
+            for (ElementsAssociation lk : textsAssociations) {
                 if (lk.processMouseDelete(ev)) {
                     if (mode == EditorMode.DELETE_OBJECTS) {
                         lk.setReadyToBeDeleted();
@@ -1055,7 +1415,7 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
             }
         }
         if (texts != null) {
-            for (SchemaRectangleElement lk : texts) {
+            for (SchemaRectangleElement lk : schemaTexts) {
                 if (mode != EditorMode.DELETE_OBJECTS && lk.isMovingAreaRelated(ev)) {
                     lk.setPointed();
                     setCursor(moveCursor);
@@ -1081,6 +1441,76 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
         }
     }
 
+    private void invalidateHitIndex() {
+        hitIndexValid = false;
+    }
+
+    /**
+     * Rebuilds the hit testing index if elements have been added, removed or
+     * moved since the last time.
+     */
+    private void validateHitIndex() {
+        if (hitIndexValid) {
+            return;
+        }
+        entityIndex.clear();
+        textIndex.clear();
+        associationIndex.clear();
+        commentAssociationIndex.clear();
+        for (Entity e : data) {
+            entityIndex.put(e, boundsOf(e));
+        }
+        for (SchemaRectangleElement t : texts) {
+            textIndex.put(t, boundsOf(t));
+        }
+        for (ElementsAssociation a : associations) {
+            associationIndex.put(a, a.getBounds());
+        }
+        for (CommentAssociation a : commentAssociations) {
+            commentAssociationIndex.put(a, a.getBounds());
+        }
+        hitIndexValid = true;
+    }
+
+    /**
+     * Moves the element and its associations to their new places in the index.
+     */
+    private void updateHitIndex(SchemaRectangleElement e) {
+        if (!hitIndexValid) {
+            return;
+        }
+        if (e instanceof Entity) {
+            entityIndex.put((Entity) e, boundsOf(e));
+        } else {
+            textIndex.put(e, boundsOf(e));
+        }
+        for (ElementsAssociation a : associations) {
+            if (a.getFromObject() == e || a.getToObject() == e) {
+                associationIndex.put(a, a.getBounds());
+            }
+        }
+        for (CommentAssociation a : commentAssociations) {
+            if (a.getFromObject() == e || a.getToObject() == e) {
+                commentAssociationIndex.put(a, a.getBounds());
+            }
+        }
+    }
+
+    /**
+     * @return position of the mouse in schema coordinates
+     */
+    private Rectangle hitArea(MouseEvent ev) {
+        return new Rectangle((int) (ev.getX() / scale), (int) (ev.getY() / scale), 0, 0);
+    }
+
+    private static Rectangle boundsOf(SchemaRectangleElement e) {
+        return new Rectangle(
+                e.getX() - HIT_MARGIN,
+                e.getY() - HIT_MARGIN,
+                e.getXSize() + 2 * HIT_MARGIN,
+                e.getYSize() + 2 * HIT_MARGIN);
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // The block of code for groups selections
     /**
@@ -1138,7 +1568,9 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
 
         boolean itemSelected = false;
 
-        for (Entity item : data) {
+        validateHitIndex();
+        Rectangle area = new Rectangle(x1, y1, x2 - x1, y2 - y1);
+        for (Entity item : entityIndex.query(area)) {
             if (x1 <= item.getX() && (item.getX() + item.getXSize()) <= x2
                     && y1 <= item.getY() && (item.getY() + item.getYSize()) <= y2) {
                 item.setSelected(true);
@@ -1146,13 +1578,13 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
             }
         }
 
-        for (ElementsAssociation association : associations) {
+        for (ElementsAssociation association : associationIndex.query(area)) {
             if (association.getFromObject().isSelected() && association.getToObject().isSelected()) {
                 association.setSelected();
             }
         }
 
-        for (SchemaRectangleElement t : texts) {
+        for (SchemaRectangleElement t : textIndex.query(area)) {
             if (t instanceof FreeText) {
                 FreeText st = (FreeText) t;
                 if (x1 <= st.getX() && (st.getX() + st.getXSize()) <= x2
@@ -1171,7 +1603,7 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
             }
         }
 
-        for (ElementsAssociation commentAssociation : commentAssociations) {
+        for (ElementsAssociation commentAssociation : commentAssociationIndex.query(area)) {
             if (commentAssociation.getFromObject().isSelected() && commentAssociation.getToObject().isSelected()) {
                 commentAssociation.setSelected();
             }
@@ -1191,14 +1623,17 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
         int moveX = (int) (ev.getX() / scale) - stPosX;
         int moveY = (int) (ev.getY() / scale) - stPosY;
 
+        // -- Loops of not selected associations are updated when the move is over ------
         for (Entity item : data) {
             if (item.isSelected()) {
                 item.shift(moveX, moveY);
+                putExtent(item);
             }
         }
         for (ElementsAssociation ld : associations) {
             if (ld.isSelected()) {
                 ld.shift(moveX, moveY);
+                putExtent(ld);
             }
         }
         for (SchemaRectangleElement t : texts) {
@@ -1206,12 +1641,14 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
                 FreeText st = (FreeText) t;
                 if (st.isSelected()) {
                     st.shift(moveX, moveY);
+                    putExtent(st);
                 }
             }
             if (t instanceof Comment) {
                 Comment ti = (Comment) t;
                 if (ti.isSelected()) {
                     ti.shift(moveX, moveY);
+                    putExtent(ti);
                 }
             }
         }
@@ -1220,6 +1657,7 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
                 ld.shift(moveX, moveY);
             }
         }
+        invalidateHitIndex();
         repaint();
         //setDirty(true);
         setDirtyAfterMouseDrag = true;
@@ -1391,82 +1829,22 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
         return true;
     }
 
-    private SchemaTransformerPreferences getSchemaTranslatorPreferences(Schema s, AbstractCimTranslator t) throws NamedElementNotFoundException {
-        SchemaTransformerPreferences schemaPrefs = null;
-        // -- Updating qulifier for the schema -----------------------------
-        List<Qualifier<SchemaTransformerPreferences>> schemaQualifiers = s.getByVariantType(SchemaTransformerPreferences.class);
-        for (Qualifier<?> q : schemaQualifiers) {
-            SchemaTransformerPreferences stp = (SchemaTransformerPreferences) q.getValue();
-            if (stp.getTransformerName().equals(translatorName)) {
-                schemaPrefs = stp;
-            }
-        }
-        return schemaPrefs;
-    }
-
-    private Map<String, Object> getTranslatorProperties(Schema s, AbstractCimTranslator t) throws NamedElementNotFoundException {
-        SchemaTransformerPreferences schemaPrefs = getSchemaTranslatorPreferences(s, t);
-        if (schemaPrefs != null) {
-            Map<String, Object> res = new LinkedHashMap<>();
-            // -- Building dialog properties ------------------------------------
-            Map<String, TranslatorPropertyMetadata> metadata = t.getPropertiesMetadata();
-            for (Entry<String, TranslatorPropertyMetadata> item : metadata.entrySet()) {
-                String name = item.getKey();
-                TranslatorPropertyMetadata meta = item.getValue();
-                if (schemaPrefs.getProperty(name) != null) {
-                    TranslatorPropertyMetadata.Type propType = meta.getPropertyType();
-                    switch (propType) {
-                        case SET:
-                        case PATH:
-                        case STRING:
-                            res.put(name, schemaPrefs.getProperty(name));
-                            break;
-                        case INTEGER:
-                            res.put(name, new Integer(schemaPrefs.getProperty(name)));
-                            break;
-                        case NUMBER:
-                            res.put(name, new Double(schemaPrefs.getProperty(name)));
-                            break;
-                        case DATE:
-                            res.put(name, new Date(schemaPrefs.getProperty(name)));
-                            break;
-                        case BOOLEAN:
-                            res.put(name, Boolean.valueOf(schemaPrefs.getProperty(name)));
-                            break;
-                    }
-                } else {
-                    res.put(name, t.getProperties().get(name));
-                }
-            }
-            return res;
-        }
-        return null;
-    }
-
-    private void setTranslatorProperties(Schema s, AbstractCimTranslator t, Map<String, Object> props) throws NamedElementNotFoundException {
-        SchemaTransformerPreferences schemaPrefs = getSchemaTranslatorPreferences(s, t);
-        if (schemaPrefs != null) {
-            for (Entry<String, Object> item : props.entrySet()) {
-                schemaPrefs.registerProperty(item.getKey(), item.getValue().toString());
-            }
-        }
-    }
-
     private void translateSchema() {
         eanbleAction("Transform", false);
-        longRuningTasks.execute(new Runnable() {
+        translationTasks.submit(this, TRANSLATE_TASK, new Runnable() {
 
             @Override
             public void run() {
                 String path = getDataObjectPath();
                 try (InputStream sysIn = dataObject.getPrimaryFile().getInputStream()) {
-                    // -- Reading a schema from the file first -------------------------
+                    // -- Reading a schema from the file first, translators get -------
+                    // -- an immutable snapshot which is traversed without locking ---
                     ModelReader r = ModelReaderFactory.newInstance(new ErdVariantsFactory());
-                    Schema s = r.read(sysIn);
+                    Schema s = r.read(sysIn).snapshot();
                     // -- Finding selected translator ----------------------------------
                     for (AbstractCimTranslator t : TranslatorsRepository.getTranslators()) {
                         if (t.getName().equals(translatorName)) {
-                            Map<String, Object> trProps = getTranslatorProperties(s, t);
+                            Map<String, Object> trProps = SchemaTranslatorProperties.read(s, t);
                             if (trProps != null) {
                                 ValidationResult vr = t.validateProperties(path, trProps);
                                 if (!vr.isValid()) {
@@ -1518,7 +1896,7 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
                     // -- Updating qulifier for thechema -----------------------------
                     SchemaTransformerPreferences schemaPrefs;
                     // -- Building dialog properties ------------------------------------
-                    Map<String, Object> savedProps = getTranslatorProperties(s, t);
+                    Map<String, Object> savedProps = SchemaTranslatorProperties.read(s, t);
                     if (savedProps == null) {
                         savedProps = t.getProperties();
                         schemaPrefs = new SchemaTransformerPreferences();
@@ -1538,15 +1916,17 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
                             String path = getDataObjectPath();
                             ValidationResult vr = t.validateProperties(path, d.getProperties());
                             if (vr.isValid()) {
-                                setTranslatorProperties(s, t, d.getProperties());
+                                SchemaTranslatorProperties.write(s, t, d.getProperties());
                                 // -- Setting translator's settings qualifier -------------------
                                 try (ByteArrayOutputStream sysOut = new ByteArrayOutputStream()) {
-                                    ModelWriter writer = ModelWriterFactory.newInstance();
+                                    ModelWriter writer = ModelWriterFactory.newInstance(ModelWriterFactory.Engine.INDENTED_XML);
                                     writer.write(sysOut, s);
                                     // ----------------------------------------------------------
                                     document.remove(0, document.getLength());
-                                    document.insertString(cnt, formatXml(sysOut.toString("utf-8")), null);
+                                    document.insertString(cnt, sysOut.toString("utf-8"), null);
                                 }
+                                // -- The view keeps its elements until the rebuild ---------
+                                schemaQualifiers = s.getQualifiers();
                                 break;
                             } else {
                                 StringBuilder sb = new StringBuilder();
@@ -1639,55 +2019,13 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
         return fullFileName.substring(0, fullFileName.lastIndexOf('/'));
     }
 
-    private String getCimRepresentation() throws Exception {
-        List<Qualifier<?>> qualifiers = null;
-        // -- Getting the current content of the schema from the document ----------
-        // -- If user made an input of translator's properties ---------------------
-        try (InputStream sysIn = new ByteArrayInputStream(document.getText(0, document.getLength()).getBytes())) {
-            // -- Reading a schema from the file first -------------------------
-            ModelReader r = ModelReaderFactory.newInstance(new ErdVariantsFactory());
-            Schema s = r.read(sysIn);
-            qualifiers = s.getQualifiers();
-        } catch (Exception e) {
-            Exceptions.printStackTrace(e);
-        }
-        // -- Building new schema -------------------------------------------------------------
-        Schema schema = ErdModelFactory.buildSchema("Test");
-        if (qualifiers != null) {
-            for (Qualifier<?> q : qualifiers) {
-                schema.add(q);
-            }
-        }
-        // -- Storing information about ERD objects -------------------------------------------
-        for (Entity ev : data) {
-            ev.addTo(schema);
-        }
-        // -- Storing information about text --------------------------------------------------
-        for (SchemaRectangleElement ao : texts) {
-            ao.addTo(schema);
-        }
-        // -- Storing information about ERD objects associations ------------------------------
-        for (ElementsAssociation association : associations) {
-            association.addTo(schema);
-        }
-        // -- Storing information about comments associations ---------------------------------
-        for (CommentAssociation association : commentAssociations) {
-            association.addTo(schema);
-        }
-
-        ByteArrayOutputStream sysOut = new ByteArrayOutputStream();
-        ModelWriter writer = ModelWriterFactory.newInstance();
-        writer.write(sysOut, schema);
-        // --------------------------------------------------------------------------------
-        return sysOut.toString("utf-8");
-    }
-
-    private void buildViewRepresentation(Schema s) throws NamedElementNotFoundException {
+    private static SchemaView buildViewRepresentation(Schema s) throws NamedElementNotFoundException {
         // -- Now we are creating GUI representation for this schema ----------------------
-        data = new ArrayList<>();
-        associations = new ArrayList<>();
-        commentAssociations = new ArrayList<>();
-        texts = new ArrayList<>();
+        SchemaView view = new SchemaView();
+        List<Entity> data = view.data;
+        List<ElementsAssociation> associations = view.associations;
+        List<SchemaRectangleElement> texts = view.texts;
+        List<CommentAssociation> commentAssociations = view.commentAssociations;
 
         List<NamedElement> entities = s.getElements(new Qualifier<>(new ErdModelEntity()));
         for (NamedElement e : entities) {
@@ -1704,201 +2042,270 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
             texts.add(new Comment(c));
         }
 
+        AssociationsBuilder builder = new AssociationsBuilder(data, texts);
         List<NamedElement> schemaAssociations = s.getElements(new Qualifier<>(new ErdModelEntityAssociation()));
         for (NamedElement a : schemaAssociations) {
-            ElementsAssociation ea = new ElementsAssociation(data, a);
-            int paralelNumber = 0;
-            for (ElementsAssociation lnk : associations) {
-                if (areAssociationsIdentical(lnk, ea)) {
-                    paralelNumber++;
-                }
-            }
-            ea.setParalelNumber(paralelNumber);
-            associations.add(ea);
+            associations.add(builder.buildAssociation(a));
         }
 
         List<NamedElement> schemaCommentAssociations = s.getElements(new Qualifier<>(new ErdModelTextCommentAssociation()));
         for (NamedElement a : schemaCommentAssociations) {
-            commentAssociations.add(new CommentAssociation(data, texts, a));
+            commentAssociations.add(builder.buildCommentAssociation(a));
         }
+        view.qualifiers = s.getQualifiers();
+        return view;
     }
 
     public int getMaxHeight() {
-        int max = Integer.MIN_VALUE;
-        for (SchamaClass jd : data) {
-            int pos = jd.getY() + jd.getYSize();
-            if (pos > max) {
-                max = pos;
-            }
-        }
-        for (SchemaRectangleElement jl : texts) {
-            int pos = jl.getY() + jl.getYSize();
-            if (pos > max) {
-                max = pos;
-            }
-        }
-        for (ElementsAssociation ea : associations) {
-            if (ea.isAssociationToItself() && ea.getParalelNumber() >= 2) {
-                SchemaRectangleElement lo = ea.getFromObject();
-                int pos = lo.getY() + lo.getYSize() + 32;
-                if (pos > max) {
-                    max = pos;
-                }
-            } else {
-                for (Point p : ea.getPath()) {
-                    max = p.y > max ? p.y : max;
-                }
-            }
-        }
-        return (int) (max * scale) + 10;
+        return (int) (extents.getMaxY() * scale) + 10;
     }
 
     public int getMaxWidth() {
-        int max = Integer.MIN_VALUE;
-        for (SchamaClass jd : data) {
-            int pos = jd.getX() + jd.getXSize();
-            if (pos > max) {
-                max = pos;
-            }
+        return (int) (extents.getMaxX() * scale) + 10;
+    }
+
+    public int getImageMinY() {
+        return (int) (extents.getMinY() * scale) - 10;
+    }
+
+    public int getImageMinX() {
+        return (int) (extents.getMinX() * scale) - 10;
+    }
+
+    // -- Diagram extents ---------------------------------------------------------------
+    /**
+     * Brings extents of all the elements up to date. The bounding box is
+     * recomputed only if an element on its boundary has moved inward or has
+     * been removed.
+     */
+    private void updateExtents() {
+        extents.beginPass();
+        for (Entity e : data) {
+            putExtent(e);
         }
-        for (SchemaRectangleElement jl : texts) {
-            int pos = jl.getX() + jl.getXSize();
-            if (pos > max) {
-                max = pos;
-            }
+        for (SchemaRectangleElement t : texts) {
+            putExtent(t);
         }
-        for (ElementsAssociation ea : associations) {
-            if (ea.isAssociationToItself()) {
-                SchemaRectangleElement lo = ea.getFromObject();
-                int pos = lo.getX() + lo.getXSize() + 30;
-                if (pos > max) {
-                    max = pos;
-                }
-            } else {
-                for (Point p : ea.getPath()) {
-                    max = p.x > max ? p.x : max;
+        for (ElementsAssociation a : associations) {
+            putExtent(a);
+        }
+        extents.endPass();
+    }
+
+    /**
+     * Updates extents of the element and of the loops drawn around it if the
+     * element has been moved or resized.
+     */
+    private void updateExtents(SchemaRectangleElement e) {
+        if (putExtent(e)) {
+            for (ElementsAssociation a : associations) {
+                if (a.isAssociationToItself() && a.getFromObject() == e) {
+                    putExtent(a);
                 }
             }
         }
-        return (int) (max * scale) + 10;
     }
 
-    public int getImageMinY() {
-        int min = Integer.MAX_VALUE;
-        for (SchamaClass jd : data) {
-            int pos = jd.getY();
-            if (pos < min) {
-                min = pos;
-            }
+    private boolean putExtent(SchemaRectangleElement e) {
+        return extents.put(e, e.getX(), e.getY(), e.getX() + e.getXSize(), e.getY() + e.getYSize());
+    }
+
+    /**
+     * An association takes its path, an association to itself is drawn as a
+     * loop on the sides of the entity which depend on its parallel number.
+     */
+    private boolean putExtent(ElementsAssociation ea) {
+        int minX = DiagramExtents.NONE_MIN;
+        int minY = DiagramExtents.NONE_MIN;
+        int maxX = DiagramExtents.NONE_MAX;
+        int maxY = DiagramExtents.NONE_MAX;
+        for (Point p : ea.getPath()) {
+            minX = Math.min(minX, p.x);
+            minY = Math.min(minY, p.y);
+            maxX = Math.max(maxX, p.x);
+            maxY = Math.max(maxY, p.y);
         }
-        for (SchemaRectangleElement jl : texts) {
-            int pos = jl.getY();
-            if (pos < min) {
-                min = pos;
+        SchemaRectangleElement lo = ea.getFromObject();
+        if (ea.isAssociationToItself() && lo != null) {
+            int n = ea.getParalelNumber();
+            if (n == 2 || n == 3) {
+                minX = lo.getX() - 30;
             }
-        }
-        for (ElementsAssociation ea : associations) {
-            if (ea.isAssociationToItself() && (ea.getParalelNumber() == 1 || ea.getParalelNumber() == 2)) {
-                SchemaRectangleElement lo = ea.getFromObject();
-                int pos = lo.getY() - 32;
-                if (pos < min) {
-                    min = pos;
-                }
-            } else {
-                for (Point p : ea.getPath()) {
-                    min = p.y < min ? p.y : min;
-                }
+            if (n == 1 || n == 2) {
+                minY = lo.getY() - 32;
+            }
+            maxX = lo.getX() + lo.getXSize() + 30;
+            if (n >= 2) {
+                maxY = lo.getY() + lo.getYSize() + 32;
             }
         }
-        return (int) (min * scale) - 10;
+        return extents.put(ea, minX, minY, maxX, maxY);
     }
 
-    public int getImageMinX() {
-        int min = Integer.MAX_VALUE;
-        for (SchamaClass jd : data) {
-            int pos = jd.getX();
-            if (pos < min) {
-                min = pos;
-            }
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
+        if (dirty) {
+            invalidateHitIndex();
+            // -- The view is ahead of the document, pending rebuilds are dropped --------
+            rebuildTimer.stop();
+            rebuildGeneration.incrementAndGet();
+            if (!patchDocument()) {
+                rewriteDocument();
+            }
+            changedElements.clear();
+            updateExtents();
+            adjustSize();
         }
-        for (SchemaRectangleElement jl : texts) {
-            int pos = jl.getX();
-            if (pos < min) {
-                min = pos;
+    }
+
+    private void markChanged(SchemaRectangleElement element) {
+        changedElements.add(element);
+        // -- Associations are written with names and positions of their ends ------------
+        for (ElementsAssociation a : associations) {
+            if (a.getFromObject() == element || a.getToObject() == element) {
+                changedElements.add(a);
             }
         }
-        for (ElementsAssociation ea : associations) {
-            if (ea.isAssociationToItself() && (ea.getParalelNumber() == 2 || ea.getParalelNumber() == 3)) {
-                SchemaRectangleElement lo = ea.getFromObject();
-                int pos = lo.getX() - 30;
-                if (pos < min) {
-                    min = pos;
-                }
-            } else {
-                for (Point p : ea.getPath()) {
-                    min = p.x < min ? p.x : min;
-                }
+        for (CommentAssociation a : commentAssociations) {
+            if (a.getFromObject() == element || a.getToObject() == element) {
+                changedElements.add(a);
             }
         }
-        return (int) (min * scale) - 10;
     }
 
-    private String formatXml(String sourceXml) {
+    private void markChanged(ElementsAssociation association) {
+        changedElements.add(association);
+    }
+
+    private void markMoved() {
+        List<Entity> movedData = new ArrayList<>();
+        List<SchemaRectangleElement> movedTexts = new ArrayList<>();
+        List<ElementsAssociation> movedAssociations = new ArrayList<>();
+        List<CommentAssociation> movedCommentAssociations = new ArrayList<>();
+        collectMoved(movedData, movedTexts, movedAssociations, movedCommentAssociations);
+        changedElements.addAll(movedData);
+        changedElements.addAll(movedTexts);
+        changedElements.addAll(movedAssociations);
+        changedElements.addAll(movedCommentAssociations);
+    }
+
+    /**
+     * @return elements in the order they are stored in the document
+     */
+    private List<ShemaElement> getSchemaElements() {
+        List<ShemaElement> res = new ArrayList<>(data.size() + texts.size() + associations.size() + commentAssociations.size());
+        res.addAll(data);
+        res.addAll(texts);
+        res.addAll(associations);
+        res.addAll(commentAssociations);
+        return res;
+    }
+
+    /**
+     * Rewrites fragments of the added, changed and removed elements in place.
+     *
+     * @return false if the document has to be written as a whole
+     */
+    private boolean patchDocument() {
+        SchemaDocumentSync sync = documentSync;
+        if (sync == null) {
+            return false;
+        }
+        blockRebuild = true;
+        documentWriter = Thread.currentThread();
         try {
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            InputSource is = new InputSource(new StringReader(sourceXml));
-            Document d = db.parse(is);
-            // -- Formating XML ----------------------------------------------
-            OutputFormat format = new OutputFormat(d);
-            format.setIndenting(true);
-            format.setIndent(4);
-            Writer out = new StringWriter();
-            XMLSerializer s = new XMLSerializer(out, format);
-            s.serialize(d);
-            return out.toString();
-        } catch (ParserConfigurationException | SAXException | IOException e) {
-            logger.severe(e.getMessage());
+            if (sync.patch(document, getSchemaElements(), changedElements)) {
+                return true;
+            }
+        } catch (ModelPersistenceException | BadLocationException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Schema document can't be patched, writing it as a whole.", ex);
+        } finally {
+            documentWriter = null;
+            blockRebuild = false;
         }
-        return sourceXml;
+        documentSync = null;
+        return false;
     }
 
-    private boolean areAssociationsIdentical(ElementsAssociation lnk1, ElementsAssociation lnk2) {
-        return (lnk1.getFromObject() == lnk2.getFromObject() && lnk1.getToObject() == lnk2.getToObject())
-                || (lnk1.getFromObject() == lnk2.getToObject() && lnk1.getToObject() == lnk2.getFromObject());
+    /**
+     * Drops the sync of the document, rewrites in progress do not install
+     * theirs either.
+     *
+     * @return generation of the syncs which can be installed from now on
+     */
+    private long invalidateSync() {
+        synchronized (syncGeneration) {
+            documentSync = null;
+            return syncGeneration.incrementAndGet();
+        }
     }
 
-    public void setDirty(boolean dirty) {
-        this.dirty = dirty;
-        if (dirty) {
-            blockRebuild = true;
-            longRuningTasks.execute(new Runnable() {
+    private void rewriteDocument() {
+        final long generation = invalidateSync();
+        final List<ShemaElement> elements = getSchemaElements();
+        final List<Qualifier<?>> qualifiers = schemaQualifiers;
+        blockRebuild = true;
+        documentTasks.submit(this, WRITE_TASK, new Runnable() {
 
-                @Override
-                public void run() {
-                    try {
-                        String newDocumentRepresentation = formatXml(getCimRepresentation());
-                        document.remove(0, document.getLength());
-                        document.insertString(cnt, newDocumentRepresentation, null);
-                    } catch (BadLocationException ex) {
-                        Exceptions.printStackTrace(ex);
-                    } catch (Exception ex) {
-                        Exceptions.printStackTrace(ex);
-                    } finally {
-                        SwingUtilities.invokeLater(new Runnable() {
-
-                            @Override
-                            public void run() {
-                                blockRebuild = false;
+            @Override
+            public void run() {
+                try {
+                    Schema schema = SchemaDocumentSync.buildSchema(qualifiers, elements);
+                    final SchemaDocumentSync sync = SchemaDocumentSync.render(schema, elements);
+                    // -- The document is locked while it is written and the sync is ------
+                    // -- installed, so edits of the user come either before or after -------
+                    final BadLocationException[] failure = new BadLocationException[1];
+                    NbDocument.runAtomic(document, new Runnable() {
+
+                        @Override
+                        public void run() {
+                            // -- A newer rewrite or an edit came while this one was rendered --
+                            if (generation != syncGeneration.get()) {
+                                return;
+                            }
+                            documentWriter = Thread.currentThread();
+                            try {
+                                document.remove(0, document.getLength());
+                                document.insertString(cnt, sync.getText(), null);
+                            } catch (BadLocationException ex) {
+                                failure[0] = ex;
+                                return;
+                            } finally {
+                                documentWriter = null;
+                            }
+                            if (sync.isPatchable()) {
+                                synchronized (syncGeneration) {
+                                    if (generation == syncGeneration.get()) {
+                                        documentSync = sync;
+                                    }
+                                }
                             }
-                        });
+                        }
+                    });
+                    if (failure[0] != null) {
+                        throw failure[0];
                     }
+                } catch (BadLocationException ex) {
+                    Exceptions.printStackTrace(ex);
+                } catch (Exception ex) {
+                    Exceptions.printStackTrace(ex);
+                } finally {
+                    SwingUtilities.invokeLater(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            blockRebuild = false;
+                        }
+                    });
                 }
-            });
-            adjustSize();
-        }
+            }
+        });
     }
 
+    /**
+     * Schema qualifiers are kept in the document only, translator's properties
+     * could have been changed there.
+     */
     public String getTranslatorName() {
         return translatorName;
     }
@@ -1908,31 +2315,55 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
     }
 
     public void exportToPNG(String fName) {
-        int width = getMaxWidth();
-        int height = getMaxHeight();
-
-        int minX = getImageMinX();
-        int minY = getImageMinY();
-
-        // Create a buffered image in which to draw
-        BufferedImage bufferedImage = new BufferedImage(width - minX, height - minY, BufferedImage.TYPE_INT_RGB);
+        final int minX = getImageMinX();
+        final int minY = getImageMinY();
+        int width = getMaxWidth() - minX;
+        int height = getMaxHeight() - minY;
 
-        // Create a graphics contents on the buffered image
-        Graphics2D g2d = bufferedImage.createGraphics();
+        // -- The image is painted by bands while it is encoded, only the elements ----
+        // -- within a band are drawn and only one band is kept in memory ------------
+        BandedImage image = new BandedImage(width, height, EXPORT_BAND_HEIGHT, new BandedImage.Painter() {
 
-        g2d.translate(-minX, -minY);
-
-        // Draw graphics
-        g2d.setColor(Color.black);
-        paint(g2d);
-
-        // Graphics context no longer needed so dispose it
-        g2d.dispose();
+            @Override
+            public void paint(Graphics2D g, Rectangle area) {
+                g.translate(-minX, -minY);
+                g.setColor(Color.black);
+                SchemaPanel.this.paint(g);
+            }
+        });
 
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
         try {
-            // Save as JPEG
             File file = new File(fName);
-            ImageIO.write(bufferedImage, "png", file);
+            Files.deleteIfExists(file.toPath());
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+                writer.setOutput(out);
+                writer.write(image);
+            }
+        } catch (IOException ex) {
+            Exceptions.printStackTrace(ex);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Writes the schema as SVG while it is drawn, so the size of the schema
+     * does not matter. Elements are drawn by their own draw methods.
+     */
+    public void exportToSVG(String fName) {
+        int minX = getImageMinX();
+        int minY = getImageMinY();
+        int width = getMaxWidth() - minX;
+        int height = getMaxHeight() - minY;
+
+        try (Writer out = Files.newBufferedWriter(new File(fName).toPath(), StandardCharsets.UTF_8)) {
+            SvgGraphics g = new SvgGraphics(out, width, height);
+            g.translate(-minX, -minY);
+            g.setClip(minX, minY, width, height);
+            g.setColor(Color.black);
+            paintSchema(g, null);
+            g.finish();
         } catch (IOException ex) {
             Exceptions.printStackTrace(ex);
         }
@@ -1940,15 +2371,23 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
 
     private void chooseFileAndSaveToPNG() {
         final JFileChooser fc = new JFileChooser();
-        fc.addChoosableFileFilter(new CustomFileFilter("All *.png files", "png"));
+        CustomFileFilter pngFilter = new CustomFileFilter("All *.png files", "png");
+        CustomFileFilter svgFilter = new CustomFileFilter("All *.svg files", "svg");
+        fc.addChoosableFileFilter(pngFilter);
+        fc.addChoosableFileFilter(svgFilter);
+        fc.setFileFilter(pngFilter);
         int returnVal = fc.showSaveDialog(this);
 
         if (returnVal == JFileChooser.APPROVE_OPTION) {
             String nFileName = fc.getSelectedFile().getPath();
             if (!nFileName.contains(".")) {
-                nFileName += ".png";
+                nFileName += fc.getFileFilter() == svgFilter ? ".svg" : ".png";
+            }
+            if (nFileName.toLowerCase(Locale.ENGLISH).endsWith(".svg")) {
+                exportToSVG(nFileName);
+            } else {
+                exportToPNG(nFileName);
             }
-            exportToPNG(nFileName);
         }
     }
 
@@ -1976,6 +2415,33 @@ public class SchemaPanel extends JPanel implements MouseListener, ActionListener
         }
     }
 
+    private static final class DragLayer {
+
+        private final Rectangle area;
+        private final double scale;
+        private final BufferedImage image;
+        private final List<Entity> data = new ArrayList<>();
+        private final List<SchemaRectangleElement> texts = new ArrayList<>();
+        private final List<ElementsAssociation> associations = new ArrayList<>();
+        private final List<CommentAssociation> commentAssociations = new ArrayList<>();
+        private final Set<ShemaElement> moved = Collections.newSetFromMap(new IdentityHashMap<ShemaElement, Boolean>());
+
+        DragLayer(Rectangle area, double scale) {
+            this.area = new Rectangle(area);
+            this.scale = scale;
+            this.image = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_RGB);
+        }
+    }
+
+    private static final class SchemaView {
+
+        private final List<Entity> data = new ArrayList<>();
+        private final List<ElementsAssociation> associations = new ArrayList<>();
+        private final List<SchemaRectangleElement> texts = new ArrayList<>();
+        private final List<CommentAssociation> commentAssociations = new ArrayList<>();
+        private List<Qualifier<?>> qualifiers;
+    }
+
     private enum EditorMode {
 
         DEFAULT, ADD_NEW_OBJECT, ADD_NEW_ASSOCIATION, ADD_NEW_TEXT, DELETE_OBJECTS, ADD_NEW_COMMENT, ADD_NEW_COMMENT_ASSOCIATION
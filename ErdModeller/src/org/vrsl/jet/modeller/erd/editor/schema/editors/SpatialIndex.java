@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.modeller.erd.editor.schema.editors;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid over bounds of schema elements. Queries return candidates only,
+ * exact hit testing is still done by the elements themselves. Candidates are
+ * returned in the order the elements have been put into the index.
+ */
+final class SpatialIndex<T> {
+
+    private static final Comparator<Entry<?>> byOrder = new Comparator<Entry<?>>() {
+
+        @Override
+        public int compare(Entry<?> a, Entry<?> b) {
+            return Integer.compare(a.order, b.order);
+        }
+    };
+
+    private final int cellSize;
+    private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+    private int nextOrder = 0;
+    private int queryStamp = 0;
+
+    SpatialIndex(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size has to be positive.");
+        }
+        this.cellSize = cellSize;
+    }
+
+    void clear() {
+        cells.clear();
+        entries.clear();
+        nextOrder = 0;
+    }
+
+    /**
+     * Adds the item or moves it to the new bounds keeping its order.
+     */
+    void put(T item, Rectangle bounds) {
+        Entry<T> e = entries.get(item);
+        if (e == null) {
+            e = new Entry<>(item, nextOrder++);
+            entries.put(item, e);
+        } else if (e.bounds.equals(bounds)) {
+            return;
+        } else if (e.x0 == cell(bounds.x) && e.y0 == cell(bounds.y)
+                && e.x1 == cell(bounds.x + bounds.width) && e.y1 == cell(bounds.y + bounds.height)) {
+            e.bounds = new Rectangle(bounds);
+            return;
+        } else {
+            unlink(e);
+        }
+        e.bounds = new Rectangle(bounds);
+        e.x0 = cell(bounds.x);
+        e.y0 = cell(bounds.y);
+        e.x1 = cell(bounds.x + bounds.width);
+        e.y1 = cell(bounds.y + bounds.height);
+        for (int cx = e.x0; cx <= e.x1; cx++) {
+            for (int cy = e.y0; cy <= e.y1; cy++) {
+                Long key = key(cx, cy);
+                List<Entry<T>> bucket = cells.get(key);
+                if (bucket == null) {
+                    bucket = new ArrayList<>(4);
+                    cells.put(key, bucket);
+                }
+                bucket.add(e);
+            }
+        }
+    }
+
+    void remove(T item) {
+        Entry<T> e = entries.remove(item);
+        if (e != null) {
+            unlink(e);
+        }
+    }
+
+    List<T> query(Point p) {
+        return query(new Rectangle(p.x, p.y, 0, 0), Collections.<T>emptyList());
+    }
+
+    List<T> query(Rectangle area) {
+        return query(area, Collections.<T>emptyList());
+    }
+
+    /**
+     * @return items whose bounds touch the area together with the given items
+     * which are still indexed
+     */
+    List<T> query(Rectangle area, Collection<? extends T> also) {
+        int stamp = ++queryStamp;
+        List<Entry<T>> found = new ArrayList<>();
+        int x0 = cell(area.x);
+        int y0 = cell(area.y);
+        int x1 = cell(area.x + area.width);
+        int y1 = cell(area.y + area.height);
+        // -- Large areas are cheaper to check item by item --------------------------------
+        if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > entries.size()) {
+            for (Entry<T> e : entries.values()) {
+                if (e.touches(area)) {
+                    e.stamp = stamp;
+                    found.add(e);
+                }
+            }
+        } else {
+            for (int cx = x0; cx <= x1; cx++) {
+                for (int cy = y0; cy <= y1; cy++) {
+                    List<Entry<T>> bucket = cells.get(key(cx, cy));
+                    if (bucket == null) {
+                        continue;
+                    }
+                    for (Entry<T> e : bucket) {
+                        if (e.stamp != stamp && e.touches(area)) {
+                            e.stamp = stamp;
+                            found.add(e);
+                        }
+                    }
+                }
+            }
+        }
+        for (T item : also) {
+            Entry<T> e = entries.get(item);
+            if (e != null && e.stamp != stamp) {
+                e.stamp = stamp;
+                found.add(e);
+            }
+        }
+        Collections.sort(found, byOrder);
+        List<T> res = new ArrayList<>(found.size());
+        for (Entry<T> e : found) {
+            res.add(e.item);
+        }
+        return res;
+    }
+
+    private void unlink(Entry<T> e) {
+        for (int cx = e.x0; cx <= e.x1; cx++) {
+            for (int cy = e.y0; cy <= e.y1; cy++) {
+                Long key = key(cx, cy);
+                List<Entry<T>> bucket = cells.get(key);
+                if (bucket != null) {
+                    bucket.remove(e);
+                    if (bucket.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private int cell(int v) {
+        return v >= 0 ? v / cellSize : -((-v - 1) / cellSize) - 1;
+    }
+
+    private static Long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private static final class Entry<T> {
+
+        private final T item;
+        private final int order;
+        private Rectangle bounds;
+        private int x0;
+        private int y0;
+        private int x1;
+        private int y1;
+        private int stamp;
+
+        Entry(T item, int order) {
+            this.item = item;
+            this.order = order;
+        }
+
+        /**
+         * Edges are inclusive the same way as in the elements hit tests.
+         */
+        boolean touches(Rectangle area) {
+            return bounds.x <= area.x + area.width && area.x <= bounds.x + bounds.width
+                    && bounds.y <= area.y + area.height && area.y <= bounds.y + bounds.height;
+        }
+    }
+}
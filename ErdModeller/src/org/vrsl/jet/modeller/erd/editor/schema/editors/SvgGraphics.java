@@ -0,0 +1,963 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.modeller.erd.editor.schema.editors;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.AttributedCharacterIterator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+
+/**
+ * Graphics which writes everything drawn on it as SVG elements, so schema
+ * elements are exported by their own draw methods. Every element is written
+ * as soon as it is drawn, in user space of the current transform. Images are
+ * embedded once and referenced afterwards, the clip is written as a group of
+ * the elements drawn with it.
+ * <p>
+ * Paints other than colors are written with the current color, composites
+ * other than the alpha one are ignored. XOR mode and copying of areas are not
+ * supported.
+ */
+final class SvgGraphics extends Graphics2D {
+
+    private static final String BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private static Graphics2D measuringGraphics = null;
+
+    private final Output output;
+    private AffineTransform transform;
+    // -- Clip in device space, null if there is no clip -------------------------------
+    private Shape clip;
+    private Color color;
+    private Paint paint;
+    private Font font;
+    private Stroke stroke;
+    private Color background;
+    private Composite composite;
+    private final RenderingHints hints;
+
+    /**
+     * Writes the header of an SVG document of the size.
+     */
+    SvgGraphics(Writer writer, int width, int height) {
+        output = new Output(writer);
+        transform = new AffineTransform();
+        clip = null;
+        color = Color.BLACK;
+        paint = color;
+        font = new Font(Font.DIALOG, Font.PLAIN, 12);
+        stroke = new BasicStroke();
+        background = Color.WHITE;
+        composite = AlphaComposite.SrcOver;
+        hints = new RenderingHints(null);
+        output.out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        output.out.println("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" version=\"1.1\""
+                + " width=\"" + width + "\" height=\"" + height + "\" viewBox=\"0 0 " + width + " " + height + "\">");
+    }
+
+    private SvgGraphics(SvgGraphics g) {
+        output = g.output;
+        transform = new AffineTransform(g.transform);
+        clip = g.clip;
+        color = g.color;
+        paint = g.paint;
+        font = g.font;
+        stroke = g.stroke;
+        background = g.background;
+        composite = g.composite;
+        hints = (RenderingHints) g.hints.clone();
+    }
+
+    /**
+     * Writes the end of the document and flushes it, the writer is not closed.
+     *
+     * @throws IOException if the document has not been written completely
+     */
+    void finish() throws IOException {
+        output.closeGroup();
+        output.out.println("</svg>");
+        output.out.flush();
+        if (output.out.checkError()) {
+            throw new IOException("SVG document has not been written.");
+        }
+    }
+
+    // -- Shapes ------------------------------------------------------------------------
+    @Override
+    public void draw(Shape s) {
+        if (!(stroke instanceof BasicStroke)) {
+            fill(stroke.createStrokedShape(s));
+            return;
+        }
+        StringBuilder sb = element(s);
+        sb.append(" fill=\"none\"");
+        appendColor(sb, "stroke");
+        appendStroke(sb, (BasicStroke) stroke);
+        write(sb.append("/>"));
+    }
+
+    @Override
+    public void fill(Shape s) {
+        StringBuilder sb = element(s);
+        appendColor(sb, "fill");
+        write(sb.append("/>"));
+    }
+
+    /**
+     * @return start of the element for the shape in user space
+     */
+    private StringBuilder element(Shape s) {
+        StringBuilder sb = new StringBuilder();
+        if (s instanceof Line2D) {
+            Line2D l = (Line2D) s;
+            sb.append("<line x1=\"").append(num(l.getX1())).append("\" y1=\"").append(num(l.getY1()))
+                    .append("\" x2=\"").append(num(l.getX2())).append("\" y2=\"").append(num(l.getY2())).append('"');
+        } else if (s instanceof Rectangle2D) {
+            Rectangle2D r = (Rectangle2D) s;
+            sb.append("<rect x=\"").append(num(r.getX())).append("\" y=\"").append(num(r.getY()))
+                    .append("\" width=\"").append(num(r.getWidth())).append("\" height=\"").append(num(r.getHeight())).append('"');
+        } else {
+            sb.append("<path d=\"");
+            boolean evenOdd = appendPath(sb, s);
+            sb.append('"');
+            if (evenOdd) {
+                sb.append(" fill-rule=\"evenodd\"");
+            }
+        }
+        appendTransform(sb, transform);
+        return sb;
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        draw(new Line2D.Float(x1, y1, x2, y2));
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        fill(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void clearRect(int x, int y, int width, int height) {
+        Paint p = paint;
+        Color c = color;
+        setColor(background);
+        fillRect(x, y, width, height);
+        color = c;
+        paint = p;
+    }
+
+    @Override
+    public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        draw(new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight));
+    }
+
+    @Override
+    public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        fill(new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight));
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        draw(new Ellipse2D.Float(x, y, width, height));
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        fill(new Ellipse2D.Float(x, y, width, height));
+    }
+
+    @Override
+    public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        draw(new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN));
+    }
+
+    @Override
+    public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        fill(new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.PIE));
+    }
+
+    @Override
+    public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+        if (nPoints < 2) {
+            return;
+        }
+        Path2D.Float p = new Path2D.Float();
+        p.moveTo(xPoints[0], yPoints[0]);
+        for (int i = 1; i < nPoints; i++) {
+            p.lineTo(xPoints[i], yPoints[i]);
+        }
+        draw(p);
+    }
+
+    @Override
+    public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        draw(new Polygon(xPoints, yPoints, nPoints));
+    }
+
+    @Override
+    public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        fill(new Polygon(xPoints, yPoints, nPoints));
+    }
+
+    @Override
+    public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+        Shape shape = onStroke ? stroke.createStrokedShape(s) : s;
+        return transform.createTransformedShape(shape).intersects(rect);
+    }
+
+    // -- Text --------------------------------------------------------------------------
+    @Override
+    public void drawString(String str, int x, int y) {
+        drawString(str, (float) x, (float) y);
+    }
+
+    @Override
+    public void drawString(String str, float x, float y) {
+        if (str == null) {
+            throw new NullPointerException("String is null");
+        }
+        if (str.isEmpty()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder("<text x=\"");
+        sb.append(num(x)).append("\" y=\"").append(num(y)).append('"');
+        appendTransform(sb, transform);
+        sb.append(" font-family=\"").append(fontFamily(font)).append('"');
+        sb.append(" font-size=\"").append(num(font.getSize2D())).append('"');
+        if (font.isBold()) {
+            sb.append(" font-weight=\"bold\"");
+        }
+        if (font.isItalic()) {
+            sb.append(" font-style=\"italic\"");
+        }
+        appendColor(sb, "fill");
+        sb.append(" xml:space=\"preserve\">");
+        escape(sb, str);
+        sb.append("</text>");
+        write(sb);
+    }
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+        drawString(iterator, (float) x, (float) y);
+    }
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, float x, float y) {
+        StringBuilder sb = new StringBuilder();
+        for (char c = iterator.first(); c != AttributedCharacterIterator.DONE; c = iterator.next()) {
+            sb.append(c);
+        }
+        drawString(sb.toString(), x, y);
+    }
+
+    @Override
+    public void drawGlyphVector(GlyphVector g, float x, float y) {
+        fill(g.getOutline(x, y));
+    }
+
+    private static String fontFamily(Font f) {
+        String family = f.getFamily();
+        switch (family) {
+            case Font.DIALOG:
+            case Font.SANS_SERIF:
+                return "sans-serif";
+            case Font.SERIF:
+                return "serif";
+            case Font.DIALOG_INPUT:
+            case Font.MONOSPACED:
+                return "monospace";
+            default:
+                StringBuilder sb = new StringBuilder();
+                escape(sb, family);
+                return sb.append(", sans-serif").toString();
+        }
+    }
+
+    @Override
+    public Font getFont() {
+        return font;
+    }
+
+    @Override
+    public void setFont(Font font) {
+        if (font != null) {
+            this.font = font;
+        }
+    }
+
+    @Override
+    public FontMetrics getFontMetrics(Font f) {
+        return measuringGraphics().getFontMetrics(f);
+    }
+
+    @Override
+    public FontRenderContext getFontRenderContext() {
+        return new FontRenderContext(transform,
+                hints.get(RenderingHints.KEY_TEXT_ANTIALIASING) == RenderingHints.VALUE_TEXT_ANTIALIAS_ON,
+                hints.get(RenderingHints.KEY_FRACTIONALMETRICS) == RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+    }
+
+    private static synchronized Graphics2D measuringGraphics() {
+        if (measuringGraphics == null) {
+            measuringGraphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+        }
+        return measuringGraphics;
+    }
+
+    // -- Images ------------------------------------------------------------------------
+    @Override
+    public boolean drawImage(Image img, AffineTransform xform, ImageObserver observer) {
+        if (img == null) {
+            return true;
+        }
+        String id = output.images.get(img);
+        if (id == null) {
+            int w = img.getWidth(observer);
+            int h = img.getHeight(observer);
+            if (w <= 0 || h <= 0) {
+                return false;
+            }
+            BufferedImage bi;
+            if (img instanceof BufferedImage) {
+                bi = (BufferedImage) img;
+            } else {
+                bi = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = bi.createGraphics();
+                g.drawImage(img, 0, 0, null);
+                g.dispose();
+            }
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            try {
+                ImageIO.write(bi, "png", png);
+            } catch (IOException ex) {
+                return false;
+            }
+            id = output.nextId("i");
+            output.images.put(img, id);
+            output.out.println("<defs><image id=\"" + id + "\" width=\"" + w + "\" height=\"" + h
+                    + "\" xlink:href=\"data:image/png;base64," + base64(png.toByteArray()) + "\"/></defs>");
+        }
+        AffineTransform t = new AffineTransform(transform);
+        if (xform != null) {
+            t.concatenate(xform);
+        }
+        StringBuilder sb = new StringBuilder("<use xlink:href=\"#").append(id).append('"');
+        appendTransform(sb, t);
+        appendOpacity(sb, 1f);
+        write(sb.append("/>"));
+        return true;
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+        return drawImage(img, AffineTransform.getTranslateInstance(x, y), observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, int width, int height, ImageObserver observer) {
+        int w = img.getWidth(observer);
+        int h = img.getHeight(observer);
+        if (w <= 0 || h <= 0) {
+            return false;
+        }
+        AffineTransform t = AffineTransform.getTranslateInstance(x, y);
+        t.scale((double) width / w, (double) height / h);
+        return drawImage(img, t, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, Color bgcolor, ImageObserver observer) {
+        return drawImage(img, x, y, img.getWidth(observer), img.getHeight(observer), bgcolor, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, int width, int height, Color bgcolor, ImageObserver observer) {
+        if (bgcolor != null) {
+            Paint p = paint;
+            Color c = color;
+            setColor(bgcolor);
+            fillRect(x, y, width, height);
+            color = c;
+            paint = p;
+        }
+        return drawImage(img, x, y, width, height, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
+        return drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, Color bgcolor, ImageObserver observer) {
+        int sw = sx2 - sx1;
+        int sh = sy2 - sy1;
+        if (sw == 0 || sh == 0) {
+            return true;
+        }
+        // -- The part of the image is copied, so it is embedded on its own ----------
+        BufferedImage part = new BufferedImage(Math.abs(sw), Math.abs(sh), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = part.createGraphics();
+        g.drawImage(img, 0, 0, Math.abs(sw), Math.abs(sh), sx1, sy1, sx2, sy2, observer);
+        g.dispose();
+        int x = Math.min(dx1, dx2);
+        int y = Math.min(dy1, dy2);
+        return drawImage(part, x, y, Math.abs(dx2 - dx1), Math.abs(dy2 - dy1), bgcolor, observer);
+    }
+
+    @Override
+    public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+        drawImage(op == null ? img : op.filter(img, null), x, y, null);
+    }
+
+    @Override
+    public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+        BufferedImage bi;
+        if (img instanceof BufferedImage) {
+            bi = (BufferedImage) img;
+        } else {
+            bi = new BufferedImage(img.getColorModel(), img.copyData(null),
+                    img.getColorModel().isAlphaPremultiplied(), null);
+        }
+        drawImage(bi, xform, null);
+    }
+
+    @Override
+    public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
+        drawRenderedImage(img.createDefaultRendering(), xform);
+    }
+
+    // -- Attributes --------------------------------------------------------------------
+    @Override
+    public Color getColor() {
+        return color;
+    }
+
+    @Override
+    public void setColor(Color c) {
+        if (c != null) {
+            color = c;
+            paint = c;
+        }
+    }
+
+    @Override
+    public Paint getPaint() {
+        return paint;
+    }
+
+    @Override
+    public void setPaint(Paint paint) {
+        if (paint instanceof Color) {
+            setColor((Color) paint);
+        } else if (paint != null) {
+            this.paint = paint;
+        }
+    }
+
+    @Override
+    public void setPaintMode() {
+        composite = AlphaComposite.SrcOver;
+    }
+
+    @Override
+    public void setXORMode(Color c) {
+        throw new UnsupportedOperationException("XOR mode is not supported by SVG export.");
+    }
+
+    @Override
+    public Stroke getStroke() {
+        return stroke;
+    }
+
+    @Override
+    public void setStroke(Stroke s) {
+        if (s != null) {
+            stroke = s;
+        }
+    }
+
+    @Override
+    public Composite getComposite() {
+        return composite;
+    }
+
+    @Override
+    public void setComposite(Composite comp) {
+        if (comp != null) {
+            composite = comp;
+        }
+    }
+
+    @Override
+    public Color getBackground() {
+        return background;
+    }
+
+    @Override
+    public void setBackground(Color color) {
+        background = color;
+    }
+
+    @Override
+    public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
+        hints.put(hintKey, hintValue);
+    }
+
+    @Override
+    public Object getRenderingHint(RenderingHints.Key hintKey) {
+        return hints.get(hintKey);
+    }
+
+    @Override
+    public void setRenderingHints(Map<?, ?> hints) {
+        this.hints.clear();
+        this.hints.putAll(hints);
+    }
+
+    @Override
+    public void addRenderingHints(Map<?, ?> hints) {
+        this.hints.putAll(hints);
+    }
+
+    @Override
+    public RenderingHints getRenderingHints() {
+        return (RenderingHints) hints.clone();
+    }
+
+    @Override
+    public GraphicsConfiguration getDeviceConfiguration() {
+        return measuringGraphics().getDeviceConfiguration();
+    }
+
+    // -- Transform ---------------------------------------------------------------------
+    @Override
+    public void translate(int x, int y) {
+        transform.translate(x, y);
+    }
+
+    @Override
+    public void translate(double tx, double ty) {
+        transform.translate(tx, ty);
+    }
+
+    @Override
+    public void rotate(double theta) {
+        transform.rotate(theta);
+    }
+
+    @Override
+    public void rotate(double theta, double x, double y) {
+        transform.rotate(theta, x, y);
+    }
+
+    @Override
+    public void scale(double sx, double sy) {
+        transform.scale(sx, sy);
+    }
+
+    @Override
+    public void shear(double shx, double shy) {
+        transform.shear(shx, shy);
+    }
+
+    @Override
+    public void transform(AffineTransform tx) {
+        transform.concatenate(tx);
+    }
+
+    @Override
+    public void setTransform(AffineTransform tx) {
+        transform = new AffineTransform(tx);
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return new AffineTransform(transform);
+    }
+
+    // -- Clip --------------------------------------------------------------------------
+    @Override
+    public Shape getClip() {
+        if (clip == null) {
+            return null;
+        }
+        try {
+            return transformed(transform.createInverse(), clip);
+        } catch (NoninvertibleTransformException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public Rectangle getClipBounds() {
+        Shape c = getClip();
+        return c == null ? null : c.getBounds();
+    }
+
+    @Override
+    public void clipRect(int x, int y, int width, int height) {
+        clip(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void setClip(int x, int y, int width, int height) {
+        setClip(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void setClip(Shape clip) {
+        this.clip = clip == null ? null : transformed(transform, clip);
+    }
+
+    @Override
+    public void clip(Shape s) {
+        if (s == null) {
+            clip = null;
+            return;
+        }
+        Shape device = transformed(transform, s);
+        if (clip == null) {
+            clip = device;
+        } else if (clip instanceof Rectangle2D && device instanceof Rectangle2D) {
+            clip = ((Rectangle2D) clip).createIntersection((Rectangle2D) device);
+        } else {
+            Area a = new Area(clip);
+            a.intersect(new Area(device));
+            clip = a;
+        }
+    }
+
+    /**
+     * Rectangles stay rectangles under translation and scaling, so a clip
+     * saved and restored is still the same rectangle and does not start a new
+     * group.
+     */
+    private static Shape transformed(AffineTransform t, Shape s) {
+        if (s instanceof Rectangle2D && (t.getType() & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_MASK_SCALE)) == 0) {
+            Rectangle2D r = (Rectangle2D) s;
+            double[] pts = {r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY()};
+            t.transform(pts, 0, pts, 0, 2);
+            Rectangle2D.Double res = new Rectangle2D.Double();
+            res.setFrameFromDiagonal(pts[0], pts[1], pts[2], pts[3]);
+            return res;
+        }
+        return t.createTransformedShape(s);
+    }
+
+    @Override
+    public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+        throw new UnsupportedOperationException("Copying of areas is not supported by SVG export.");
+    }
+
+    // -- Life cycle --------------------------------------------------------------------
+    @Override
+    public Graphics create() {
+        return new SvgGraphics(this);
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    // -- Writing -----------------------------------------------------------------------
+    private void write(StringBuilder element) {
+        output.group(clip);
+        output.out.println(element);
+    }
+
+    private void appendColor(StringBuilder sb, String attribute) {
+        sb.append(' ').append(attribute).append("=\"#");
+        String rgb = Integer.toHexString(color.getRGB() & 0xFFFFFF);
+        for (int i = rgb.length(); i < 6; i++) {
+            sb.append('0');
+        }
+        sb.append(rgb).append('"');
+        float alpha = color.getAlpha() / 255f;
+        if (composite instanceof AlphaComposite) {
+            alpha *= ((AlphaComposite) composite).getAlpha();
+        }
+        if (alpha < 1f) {
+            sb.append(' ').append(attribute).append("-opacity=\"").append(num(alpha)).append('"');
+        }
+    }
+
+    private void appendOpacity(StringBuilder sb, float alpha) {
+        if (composite instanceof AlphaComposite) {
+            alpha *= ((AlphaComposite) composite).getAlpha();
+        }
+        if (alpha < 1f) {
+            sb.append(" opacity=\"").append(num(alpha)).append('"');
+        }
+    }
+
+    private static void appendStroke(StringBuilder sb, BasicStroke s) {
+        if (s.getLineWidth() != 1f) {
+            sb.append(" stroke-width=\"").append(num(s.getLineWidth())).append('"');
+        }
+        switch (s.getEndCap()) {
+            case BasicStroke.CAP_ROUND:
+                sb.append(" stroke-linecap=\"round\"");
+                break;
+            case BasicStroke.CAP_SQUARE:
+                sb.append(" stroke-linecap=\"square\"");
+                break;
+        }
+        switch (s.getLineJoin()) {
+            case BasicStroke.JOIN_ROUND:
+                sb.append(" stroke-linejoin=\"round\"");
+                break;
+            case BasicStroke.JOIN_BEVEL:
+                sb.append(" stroke-linejoin=\"bevel\"");
+                break;
+            default:
+                if (s.getMiterLimit() != 4f) {
+                    sb.append(" stroke-miterlimit=\"").append(num(Math.max(1f, s.getMiterLimit()))).append('"');
+                }
+        }
+        float[] dash = s.getDashArray();
+        if (dash != null && dash.length > 0) {
+            sb.append(" stroke-dasharray=\"");
+            for (int i = 0; i < dash.length; i++) {
+                sb.append(i > 0 ? "," : "").append(num(dash[i]));
+            }
+            sb.append('"');
+            if (s.getDashPhase() != 0f) {
+                sb.append(" stroke-dashoffset=\"").append(num(s.getDashPhase())).append('"');
+            }
+        }
+    }
+
+    private static void appendTransform(StringBuilder sb, AffineTransform t) {
+        if (t.isIdentity()) {
+            return;
+        }
+        if (t.getType() == AffineTransform.TYPE_TRANSLATION) {
+            sb.append(" transform=\"translate(").append(num(t.getTranslateX())).append(' ')
+                    .append(num(t.getTranslateY())).append(")\"");
+            return;
+        }
+        sb.append(" transform=\"matrix(").append(num(t.getScaleX())).append(' ').append(num(t.getShearY())).append(' ')
+                .append(num(t.getShearX())).append(' ').append(num(t.getScaleY())).append(' ')
+                .append(num(t.getTranslateX())).append(' ').append(num(t.getTranslateY())).append(")\"");
+    }
+
+    /**
+     * @return whether the path uses the even-odd rule
+     */
+    private static boolean appendPath(StringBuilder sb, Shape s) {
+        double[] c = new double[6];
+        PathIterator it = s.getPathIterator(null);
+        boolean evenOdd = it.getWindingRule() == PathIterator.WIND_EVEN_ODD;
+        for (; !it.isDone(); it.next()) {
+            switch (it.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO:
+                    sb.append('M').append(num(c[0])).append(' ').append(num(c[1]));
+                    break;
+                case PathIterator.SEG_LINETO:
+                    sb.append('L').append(num(c[0])).append(' ').append(num(c[1]));
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    sb.append('Q').append(num(c[0])).append(' ').append(num(c[1])).append(' ')
+                            .append(num(c[2])).append(' ').append(num(c[3]));
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    sb.append('C').append(num(c[0])).append(' ').append(num(c[1])).append(' ')
+                            .append(num(c[2])).append(' ').append(num(c[3])).append(' ')
+                            .append(num(c[4])).append(' ').append(num(c[5]));
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    sb.append('Z');
+                    break;
+            }
+        }
+        return evenOdd;
+    }
+
+    /**
+     * Formats a coordinate with up to three decimals independently of the
+     * locale.
+     */
+    private static String num(double v) {
+        long rounded = Math.round(v * 1000);
+        if (rounded % 1000 == 0) {
+            return Long.toString(rounded / 1000);
+        }
+        StringBuilder sb = new StringBuilder();
+        if (rounded < 0) {
+            sb.append('-');
+            rounded = -rounded;
+        }
+        sb.append(rounded / 1000).append('.');
+        String fraction = Long.toString(1000 + rounded % 1000).substring(1);
+        int end = fraction.length();
+        while (fraction.charAt(end - 1) == '0') {
+            end--;
+        }
+        return sb.append(fraction, 0, end).toString();
+    }
+
+    private static void escape(StringBuilder sb, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                default:
+                    // -- Control characters are not allowed in XML 1.0 ---------------------
+                    if (c >= 0x20 || c == '\t') {
+                        sb.append(c);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Encodes data for a data URI, neither java.util.Base64 nor JAXB can be
+     * used on every supported platform.
+     */
+    private static String base64(byte[] data) {
+        StringBuilder sb = new StringBuilder((data.length + 2) / 3 * 4);
+        for (int i = 0; i < data.length; i += 3) {
+            int n = Math.min(3, data.length - i);
+            int bits = (data[i] & 0xff) << 16;
+            if (n > 1) {
+                bits |= (data[i + 1] & 0xff) << 8;
+            }
+            if (n > 2) {
+                bits |= data[i + 2] & 0xff;
+            }
+            for (int j = 0; j < 4; j++) {
+                sb.append(j <= n ? BASE64.charAt((bits >> (18 - 6 * j)) & 0x3f) : '=');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Document shared by the graphics and the ones created from it.
+     */
+    private static final class Output {
+
+        private final PrintWriter out;
+        private final Map<Image, String> images = new IdentityHashMap<>();
+        private int nextId = 0;
+        private boolean groupOpen = false;
+        private Shape groupClip = null;
+
+        Output(Writer writer) {
+            out = new PrintWriter(writer);
+        }
+
+        String nextId(String prefix) {
+            return prefix + (nextId++);
+        }
+
+        /**
+         * Starts a group of elements clipped by the shape unless the current
+         * group has the same clip.
+         */
+        void group(Shape clip) {
+            if (clip == groupClip || (clip != null && clip.equals(groupClip))) {
+                return;
+            }
+            closeGroup();
+            groupClip = clip;
+            if (clip != null) {
+                String id = nextId("c");
+                StringBuilder sb = new StringBuilder("<clipPath id=\"").append(id).append("\">");
+                if (clip instanceof Rectangle2D) {
+                    Rectangle2D r = (Rectangle2D) clip;
+                    sb.append("<rect x=\"").append(num(r.getX())).append("\" y=\"").append(num(r.getY()))
+                            .append("\" width=\"").append(num(r.getWidth())).append("\" height=\"").append(num(r.getHeight())).append("\"/>");
+                } else {
+                    sb.append("<path d=\"");
+                    boolean evenOdd = appendPath(sb, clip);
+                    sb.append(evenOdd ? "\" clip-rule=\"evenodd\"/>" : "\"/>");
+                }
+                sb.append("</clipPath>");
+                out.println(sb);
+                out.println("<g clip-path=\"url(#" + id + ")\">");
+                groupOpen = true;
+            }
+        }
+
+        void closeGroup() {
+            if (groupOpen) {
+                out.println("</g>");
+                groupOpen = false;
+            }
+            groupClip = null;
+        }
+    }
+}
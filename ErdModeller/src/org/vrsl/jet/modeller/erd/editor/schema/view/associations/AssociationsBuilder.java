@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Viktor Radzivilo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.vrsl.jet.modeller.erd.editor.schema.view.associations;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.vrsl.jet.modeller.erd.editor.schema.view.SchemaRectangleElement;
+import org.vrsl.jet.modeller.erd.editor.schema.view.elements.Entity;
+import org.vrsl.jet.models.cim.NamedElement;
+import org.vrsl.jet.models.cim.NamedElementNotFoundException;
+
+/**
+ * Builds associations of a view from schema associations. Objects are looked
+ * up by name and associations of the same pair of objects are numbered as
+ * they are built, so building all associations of a schema is linear.
+ */
+public class AssociationsBuilder {
+
+    private final Map<String, Entity> entities = new HashMap<>();
+    private final Map<String, SchemaRectangleElement> elements = new HashMap<>();
+    private final Map<Endpoints, Integer> paralelNumbers = new HashMap<>();
+
+    /**
+     * @param objects entities of the view
+     * @param texts texts and comments of the view, an entity is preferred to
+     * a text of the same name
+     */
+    public AssociationsBuilder(List<Entity> objects, List<? extends SchemaRectangleElement> texts) {
+        // -- The first element of a name wins the same way as in a scan of the list
+        for (Entity e : objects) {
+            if (e != null && e.getName() != null && !entities.containsKey(e.getName())) {
+                entities.put(e.getName(), e);
+            }
+        }
+        elements.putAll(entities);
+        for (SchemaRectangleElement e : texts) {
+            if (e != null && e.getName() != null && !elements.containsKey(e.getName())) {
+                elements.put(e.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Builds an association of entities numbered after associations of the
+     * same entities which have been built before.
+     */
+    public ElementsAssociation buildAssociation(NamedElement a) throws NamedElementNotFoundException {
+        ElementsAssociation ea = new ElementsAssociation(entities, a);
+        Endpoints key = new Endpoints(ea.getFromObject(), ea.getToObject());
+        Integer count = paralelNumbers.get(key);
+        int paralelNumber = count == null ? 0 : count;
+        ea.setParalelNumber(paralelNumber);
+        paralelNumbers.put(key, paralelNumber + 1);
+        return ea;
+    }
+
+    public CommentAssociation buildCommentAssociation(NamedElement a) throws NamedElementNotFoundException {
+        return new CommentAssociation(elements, a);
+    }
+
+    /**
+     * Unordered pair of objects compared by identity.
+     */
+    private static final class Endpoints {
+
+        private final SchemaRectangleElement first;
+        private final SchemaRectangleElement second;
+
+        Endpoints(SchemaRectangleElement first, SchemaRectangleElement second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Endpoints)) {
+                return false;
+            }
+            Endpoints e = (Endpoints) obj;
+            return (first == e.first && second == e.second) || (first == e.second && second == e.first);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(first) + System.identityHashCode(second);
+        }
+    }
+}
@@ -68,7 +68,11 @@ public class CommentAssociation extends ElementsAssociation {
     public CommentAssociation() {
     }
 
-    public CommentAssociation(List<Entity> objects, List<SchemaRectangleElement> texts, NamedElement ce) throws NamedElementNotFoundException {
+    /**
+     * Creates an association of a comment which is looked up by name together
+     * with other schema objects.
+     */
+    public CommentAssociation(Map<String, ? extends SchemaRectangleElement> objects, NamedElement ce) throws NamedElementNotFoundException {
         if (!(ce instanceof Association)) {
             throw new IllegalArgumentException("Wrong type of schema " + ce.getName() + " element : " + ce.getClass().getName());
         }
@@ -81,14 +85,8 @@ public class CommentAssociation extends ElementsAssociation {
         String frName = refFr.getReferedClass().getName();
         String toName = refTo.getReferedClass().getName();
 
-        from = findByName(objects, frName);
-        if (from == null) {
-            from = findByName(texts, frName);
-        }
-        to = findByName(objects, toName);
-        if (to == null) {
-            to = findByName(texts, toName);
-        }
+        from = objects.get(frName);
+        to = objects.get(toName);
 
         try {
             ErdModelPath path = a.<ErdModelPath>getFirstByVariantType(ErdModelPath.class).getValue();
@@ -115,7 +115,10 @@ public class ElementsAssociation extends ShemaElement implements Serializable {
     public ElementsAssociation() {
     }
 
-    public ElementsAssociation(List<Entity> objects, NamedElement ce) throws NamedElementNotFoundException {
+    /**
+     * Creates an association of schema objects which are looked up by name.
+     */
+    public ElementsAssociation(Map<String, ? extends SchemaRectangleElement> objects, NamedElement ce) throws NamedElementNotFoundException {
         if (!(ce instanceof Association)) {
             throw new IllegalArgumentException("Wrong type of schema " + ce.getName() + " element : " + ce.getClass().getName());
         }
@@ -134,14 +137,16 @@ public class ElementsAssociation extends ShemaElement implements Serializable {
         fromMode = frMulti.getCategory();
         toMode = toMulti.getCategory();
 
-        from = findByName(objects, frName);
-        to = findByName(objects, toName);
+        from = objects.get(frName);
+        to = objects.get(toName);
 
-        if (refFr.hasVariantTypeQualifier(ErdModelReferenceSuggestedName.class)) {
-            nameFrom = refFr.<ErdModelReferenceSuggestedName>getFirstByVariantType(ErdModelReferenceSuggestedName.class).getValue().toString();
+        Qualifier<ErdModelReferenceSuggestedName> suggestedFrom = refFr.findFirstByVariantType(ErdModelReferenceSuggestedName.class);
+        if (suggestedFrom != null) {
+            nameFrom = suggestedFrom.getValue().toString();
         }
-        if (refTo.hasVariantTypeQualifier(ErdModelReferenceSuggestedName.class)) {
-            nameTo = refTo.<ErdModelReferenceSuggestedName>getFirstByVariantType(ErdModelReferenceSuggestedName.class).getValue().toString();
+        Qualifier<ErdModelReferenceSuggestedName> suggestedTo = refTo.findFirstByVariantType(ErdModelReferenceSuggestedName.class);
+        if (suggestedTo != null) {
+            nameTo = suggestedTo.getValue().toString();
         }
 
         try {
@@ -152,15 +157,6 @@ public class ElementsAssociation extends ShemaElement implements Serializable {
         }
     }
 
-    protected <T extends SchemaRectangleElement> SchemaRectangleElement findByName(List<T> objects, String name) {
-        for (SchemaRectangleElement e : objects) {
-            if (e != null && e.getName() != null && e.getName().equals(name)) {
-                return e;
-            }
-        }
-        return null;
-    }
-
     // -----------------------------------------------------------------------------------
     // ======================= Internal data and schema relations ========================
     // -----------------------------------------------------------------------------------
@@ -231,6 +227,28 @@ public class ElementsAssociation extends ShemaElement implements Serializable {
     public List<Point> getPath() {
         return Collections.unmodifiableList(navPoints);
     }
+
+    /**
+     * @return schema area which may contain any part of the association
+     * including its reference marks, navigation points and paralel shifts
+     */
+    public Rectangle getBounds() {
+        Rectangle r = new Rectangle(from.getX(), from.getY(), from.getXSize(), from.getYSize());
+        r.add(new Rectangle(to.getX(), to.getY(), to.getXSize(), to.getYSize()));
+        for (Point p : navPoints) {
+            r.add(p);
+        }
+        if (activeZone1 != null) {
+            r.add(activeZone1.getBounds());
+        }
+        if (activeZone2 != null) {
+            r.add(activeZone2.getBounds());
+        }
+        // -- Reference marks are drawn outside of the objects -------------------------------
+        int margin = 40 + (int) LINE_SELECTION_RADIUS + MULTI_ASSOCIATION_SPACE * ((paralelNumber + 1) / 2);
+        r.grow(margin, margin);
+        return r;
+    }
     // -----------------------------------------------------------------------------------
     // ================================== Statuses =======================================
     // -----------------------------------------------------------------------------------
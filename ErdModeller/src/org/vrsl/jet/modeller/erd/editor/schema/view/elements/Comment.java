@@ -73,6 +73,9 @@ public final class Comment extends SchemaText {
     // ================================== Rendering ======================================
     // -----------------------------------------------------------------------------------
     private int fontVSize = 0;
+    // -- Lines and the font are replaced on every change, never modified -------------
+    private transient List<String> measuredCont = null;
+    private transient Font measuredFont = null;
     private final GeneralPath filledPolygon = new GeneralPath(GeneralPath.WIND_EVEN_ODD, 6);
 
     /**
@@ -214,6 +217,9 @@ public final class Comment extends SchemaText {
 
     @Override
     public void calculateBoxMetrics(Graphics g) {
+        if (cont == measuredCont && boldFont == measuredFont) {
+            return;
+        }
 
         fontVSize = 0;
         setXSize(0);
@@ -236,6 +242,9 @@ public final class Comment extends SchemaText {
 
         setYSize(getYSize() + 10);
         setXSize(getXSize() + 20);
+
+        measuredCont = cont;
+        measuredFont = boldFont;
     }
 
     @Override
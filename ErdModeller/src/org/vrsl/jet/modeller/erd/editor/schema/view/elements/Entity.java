@@ -142,6 +142,10 @@ public class Entity extends SchamaClass {
     // -----------------------------------------------------------------------------------
     private int fontVSize = 0;
     private int titleSize = 0;
+    // -- Box metrics are measured again only if the title, fields or font change -----
+    private transient String measuredName = null;
+    private transient Font measuredFont = null;
+    private transient EntityProperty[] measuredFields = null;
 
     /**
      * Creates a new instance of Entity
@@ -401,6 +405,9 @@ public class Entity extends SchamaClass {
     public void calculateBoxMetrics(Graphics g) {
         // -- Calculating a title for bold font --------------------------------
         Font f = g.getFont();
+        if (isMeasured(f)) {
+            return;
+        }
         if (boldFont == null) {
             boldFont = new Font(f.getFontName(), Font.BOLD, f.getSize());
         }
@@ -427,6 +434,28 @@ public class Entity extends SchamaClass {
         }
 
         setYSize((fields.size() + 2) * fontVSize);
+
+        measuredName = getName();
+        measuredFont = f;
+        measuredFields = fields.toArray(new EntityProperty[fields.size()]);
+    }
+
+    /**
+     * Fields are immutable, so the same field instances in the same order
+     * have the same metrics.
+     */
+    private boolean isMeasured(Font f) {
+        if (measuredFields == null || measuredFields.length != fields.size()
+                || measuredName == null || !measuredName.equals(getName())
+                || (f != measuredFont && !f.equals(measuredFont))) {
+            return false;
+        }
+        for (int i = 0; i < measuredFields.length; i++) {
+            if (measuredFields[i] != fields.get(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -60,6 +60,9 @@ public final class FreeText extends SchemaText {
     // ================================== Rendering ======================================
     // -----------------------------------------------------------------------------------
     private int fontVSize = 0;
+    // -- Lines and the font are replaced on every change, never modified -------------
+    private transient List<String> measuredCont = null;
+    private transient Font measuredFont = null;
 
     /**
      * Creates a new instance of FreeText
@@ -164,6 +167,9 @@ public final class FreeText extends SchemaText {
 
     @Override
     public void calculateBoxMetrics(Graphics g) {
+        if (cont == measuredCont && boldFont == measuredFont) {
+            return;
+        }
 
         fontVSize = 0;
         setXSize(0);
@@ -184,6 +190,9 @@ public final class FreeText extends SchemaText {
         }
 
         setYSize((int) (cont.size() * fontVSize + fontVSize * 0.3));
+
+        measuredCont = cont;
+        measuredFont = boldFont;
     }
 
     @Override
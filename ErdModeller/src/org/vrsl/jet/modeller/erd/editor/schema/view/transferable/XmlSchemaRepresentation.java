@@ -35,6 +35,7 @@ import java.util.List;
 import org.openide.util.Exceptions;
 import org.vrsl.jet.modeller.erd.editor.schema.view.SchamaClass;
 import org.vrsl.jet.modeller.erd.editor.schema.view.SchemaRectangleElement;
+import org.vrsl.jet.modeller.erd.editor.schema.view.associations.AssociationsBuilder;
 import org.vrsl.jet.modeller.erd.editor.schema.view.associations.CommentAssociation;
 import org.vrsl.jet.modeller.erd.editor.schema.view.associations.ElementsAssociation;
 import org.vrsl.jet.modeller.erd.editor.schema.view.elements.Comment;
@@ -155,21 +156,12 @@ public class XmlSchemaRepresentation implements Serializable {
     }
 
     public ElementsAssociation[] getAssociations(Entity[] objects, SchamaClass[] text) {
-        List<Entity> data = new ArrayList<>();
         List<ElementsAssociation> resultAssociations = new ArrayList<>();
-        data.addAll(Arrays.<Entity>asList(objects));
+        AssociationsBuilder builder = new AssociationsBuilder(Arrays.<Entity>asList(objects), Arrays.<SchamaClass>asList(text));
         try {
             List<NamedElement> associations = schema.getElements(new Qualifier<>(new ErdModelEntityAssociation()));
             for (NamedElement a : associations) {
-                ElementsAssociation ea = new ElementsAssociation(data, a);
-                int paralelNumber = 0;
-                for (ElementsAssociation lnk : resultAssociations) {
-                    if (areAssociationsIdentical(lnk, ea)) {
-                        paralelNumber++;
-                    }
-                }
-                ea.setParalelNumber(paralelNumber);
-                resultAssociations.add(ea);
+                resultAssociations.add(builder.buildAssociation(a));
             }
         } catch (NamedElementNotFoundException ex) {
             Exceptions.printStackTrace(ex);
@@ -178,11 +170,8 @@ public class XmlSchemaRepresentation implements Serializable {
     }
 
     public CommentAssociation[] getCommentAssociations(Entity[] objects, SchamaClass[] text) {
-        List<Entity> data = new ArrayList<>();
-        List<SchemaRectangleElement> texts = new ArrayList<>();
         List<ElementsAssociation> resultAssociations = new ArrayList<>();
-        data.addAll(Arrays.<Entity>asList(objects));
-        texts.addAll(Arrays.<SchamaClass>asList(text));
+        AssociationsBuilder builder = new AssociationsBuilder(Arrays.<Entity>asList(objects), Arrays.<SchamaClass>asList(text));
 
         if (schema == null) {
             buildSchema();
@@ -191,7 +180,7 @@ public class XmlSchemaRepresentation implements Serializable {
         try {
             List<NamedElement> commentAssociations = schema.getElements(new Qualifier<>(new ErdModelTextCommentAssociation()));
             for (NamedElement a : commentAssociations) {
-                resultAssociations.add(new CommentAssociation(data, texts, a));
+                resultAssociations.add(builder.buildCommentAssociation(a));
             }
         } catch (NamedElementNotFoundException ex) {
             Exceptions.printStackTrace(ex);
@@ -209,9 +198,4 @@ public class XmlSchemaRepresentation implements Serializable {
         }
 
     }
-    
-    private boolean areAssociationsIdentical(ElementsAssociation lnk1, ElementsAssociation lnk2) {
-        return (lnk1.getFromObject() == lnk2.getFromObject() && lnk1.getToObject() == lnk2.getToObject())
-                || (lnk1.getFromObject() == lnk2.getToObject() && lnk1.getToObject() == lnk2.getFromObject());
-    }
 }